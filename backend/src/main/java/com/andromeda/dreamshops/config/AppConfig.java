@@ -2,34 +2,20 @@ package com.andromeda.dreamshops.config;
 
 import com.cloudinary.Cloudinary;
 import com.cloudinary.utils.ObjectUtils;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 
 @Configuration
 public class AppConfig {
 
-    @Value("${cloudinary.cloud-name}")
-    private String cloudName;
-
-    @Value("${cloudinary.api-key}")
-    private String apiKey;
-
-    @Value("${cloudinary.api-secret}")
-    private String apiSecret;
-
-    /**
-     * Bean for ModelMapper to map between DTOs and entities.
-     * @return a new instance of ModelMapper
-     */
-    @Bean
-    public ModelMapper modelMapper(){
-        return new ModelMapper();
-    }
-
+    // not needed with local storage, which then runs without Cloudinary credentials
     @Bean
-    public Cloudinary cloudinary(){
+    @Profile("!local-storage")
+    public Cloudinary cloudinary(@Value("${cloudinary.cloud-name}") String cloudName,
+                                 @Value("${cloudinary.api-key}") String apiKey,
+                                 @Value("${cloudinary.api-secret}") String apiSecret){
         return new Cloudinary(ObjectUtils.asMap(
                 "cloud_name", cloudName,
                 "api_key", apiKey,
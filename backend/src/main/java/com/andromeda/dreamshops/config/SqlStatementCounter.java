@@ -0,0 +1,31 @@
+package com.andromeda.dreamshops.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Hibernate statement inspector that counts the SQL statements prepared on the current thread.
+ * Requests are served on one thread, so the count between {@link #reset()} and {@link #current()}
+ * is the number of statements that request sent to the database.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<Integer> COUNT = ThreadLocal.withInitial(() -> 0);
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.set(COUNT.get() + 1);
+        return sql;
+    }
+
+    public static void reset() {
+        COUNT.set(0);
+    }
+
+    public static int current() {
+        return COUNT.get();
+    }
+
+    public static void clear() {
+        COUNT.remove();
+    }
+}
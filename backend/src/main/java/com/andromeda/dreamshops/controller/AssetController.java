@@ -0,0 +1,181 @@
+package com.andromeda.dreamshops.controller;
+
+import com.andromeda.dreamshops.exceptions.ResourceProcessingException;
+import com.andromeda.dreamshops.service.cloudprovider.LocalStorageService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Serves the images stored by {@link LocalStorageService}, at the urls it hands out
+ * ({@code storage.local.public-url}), for deployments without the cloud CDN.
+ * <p>
+ * Stored files are content addressed, so their name is their ETag and they are cached for a year as immutable:
+ * a client that has the image gets a 304 for {@code If-None-Match}. A single {@code Range} is answered with 206;
+ * multiple ranges are answered with the whole file, which HTTP allows.
+ * The bytes are sent with sendfile when the servlet container offers it (Tomcat's NIO connector does),
+ * otherwise with {@link LocalStorageService#transferTo}; either way they are not copied through the heap
+ * in full.
+ */
+@RestController
+@Profile("local-storage")
+@RequestMapping("${storage.local.public-url}")
+public class AssetController {
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    private final LocalStorageService storageService;
+    private final String publicUrl;
+
+    public AssetController(LocalStorageService storageService,
+                           @Value("${storage.local.public-url}") String publicUrl) {
+        this.storageService = storageService;
+        this.publicUrl = publicUrl.endsWith("/") ? publicUrl.substring(0, publicUrl.length() - 1) : publicUrl;
+    }
+
+    @RequestMapping(value = "/**", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void serveAsset(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path file;
+        try {
+            file = storageService.findFile(assetPath(request)).orElse(null);
+        } catch (ResourceProcessingException e) {
+            file = null;
+        }
+        if (file == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        String etag = etagOf(file);
+        long size = Files.size(file);
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0;
+        long end = size - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] bounds = parseRange(range, size);
+            if (bounds == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (bounds.length == 2) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+            }
+        }
+
+        long length = end - start + 1;
+        response.setContentType(MediaTypeFactory.getMediaType(file.getFileName().toString())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+        response.setContentLengthLong(length);
+        if (RequestMethod.HEAD.name().equals(request.getMethod()) || length == 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            // the container writes the file to the socket itself once the request is done
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        storageService.transferTo(file, start, length, Channels.newChannel(response.getOutputStream()));
+    }
+
+    // the part of the url below the public url, e.g. dreamshops/shops/shop-1/products/product-1-phone/<sha-256>.jpg
+    private String assetPath(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return UriUtils.decode(path.substring(Math.min(publicUrl.length() + 1, path.length())), StandardCharsets.UTF_8);
+    }
+
+    // the file name without its extension is the sha-256 of the content
+    private String etagOf(Path file) {
+        String name = file.getFileName().toString();
+        int lastDot = name.lastIndexOf('.');
+        return "\"" + (lastDot > 0 ? name.substring(0, lastDot) : name) + "\"";
+    }
+
+    private boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return {start, end} (inclusive) of a single satisfiable range, an empty array if the header
+     * is not a single byte range and the whole file should be sent, or null if the range can't be satisfied
+     */
+    private long[] parseRange(String range, long size) {
+        if (!range.startsWith("bytes=") || range.contains(",")) {
+            return new long[0];
+        }
+        String spec = range.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                // the last n bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, size - suffix);
+                end = size - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            }
+            if (start >= size || start > end) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+}
@@ -2,7 +2,6 @@ package com.andromeda.dreamshops.controller;
 
 import com.andromeda.dreamshops.dto.CartDto;
 import com.andromeda.dreamshops.exceptions.ResourceNotFoundException;
-import com.andromeda.dreamshops.model.Cart;
 import com.andromeda.dreamshops.response.ApiResponse;
 import com.andromeda.dreamshops.service.cart.ICartService;
 import lombok.RequiredArgsConstructor;
@@ -24,8 +23,7 @@ public class CartController {
     @GetMapping("/{cartId}/my-cart")
     public ResponseEntity<ApiResponse> getCart(@PathVariable Long cartId){
         try {
-            Cart cart = cartService.getCart(cartId);
-            CartDto cartDto = cartService.convertToCartDto(cart);
+            CartDto cartDto = cartService.getCartDto(cartId);
             return ResponseEntity.ok(new ApiResponse("Cart retrieved successfully", cartDto));
         } catch (ResourceNotFoundException e) {
             return ResponseEntity.status(NOT_FOUND)
@@ -62,8 +60,7 @@ public class CartController {
     @GetMapping("/user/{userId}/cart")
     public ResponseEntity<ApiResponse> getCartByUserId(@PathVariable Long userId) {
         try {
-            Cart cart = cartService.getCartByUserId(userId);
-            CartDto cartDto = cartService.convertToCartDto(cart);
+            CartDto cartDto = cartService.getCartDtoByUserId(userId);
             return ResponseEntity.ok(new ApiResponse("Cart retrieved successfully", cartDto));
         } catch (ResourceNotFoundException e) {
             return ResponseEntity.status(NOT_FOUND)
@@ -1,10 +1,12 @@
 package com.andromeda.dreamshops.controller;
 
 
+import com.andromeda.dreamshops.dto.CartDto;
 import com.andromeda.dreamshops.exceptions.GeneralException;
 import com.andromeda.dreamshops.exceptions.ResourceNotFoundException;
 import com.andromeda.dreamshops.model.Cart;
 import com.andromeda.dreamshops.model.User;
+import com.andromeda.dreamshops.request.BulkCartRequest;
 import com.andromeda.dreamshops.response.ApiResponse;
 import com.andromeda.dreamshops.service.cart.ICartItemService;
 import com.andromeda.dreamshops.service.cart.ICartService;
@@ -55,6 +57,34 @@ public class CartItemController {
         }
     }
 
+    /**
+     * Applies many line operations (ADD, UPDATE, REMOVE) to the user's cart at once,
+     * e.g. to restore a saved cart in one call instead of one call per product.
+     *
+     * @param request the operations, applied in order and all or none
+     * @return the cart after the operations
+     */
+    @PostMapping("/items/bulk")
+    public ResponseEntity<ApiResponse> applyBulkOperations(@RequestBody BulkCartRequest request) {
+        try {
+            User user = userService.getAuthenticatedUser();
+
+            Cart cart = cartService.initializeNewCart(user);
+
+            CartDto cartDto = cartItemService.applyOperations(cart.getId(), request.getOperations());
+            return ResponseEntity.ok(new ApiResponse("Cart updated successfully", cartDto));
+        }catch(GeneralException e){
+            return ResponseEntity.status(CONFLICT)
+                    .body(new ApiResponse(e.getMessage(), null));
+        }catch (ResourceNotFoundException e) {
+            return ResponseEntity.status(NOT_FOUND)
+                    .body(new ApiResponse( e.getMessage(), null));
+        }catch (JwtException e){
+            return ResponseEntity.status(UNAUTHORIZED)
+                    .body(new ApiResponse(e.getMessage(), null));
+        }
+    }
+
     @DeleteMapping("/cart/{cartId}/item/{productId}/remove")
     public ResponseEntity<ApiResponse> removeItemFromCart(  @PathVariable Long cartId,
                                                             @PathVariable Long productId) {
@@ -1,6 +1,8 @@
 package com.andromeda.dreamshops.controller;
 
 import com.andromeda.dreamshops.dto.ImageDto;
+import com.andromeda.dreamshops.dto.ImageUploadResultDto;
+import com.andromeda.dreamshops.exceptions.ImageUploadException;
 import com.andromeda.dreamshops.exceptions.ResourceNotFoundException;
 import com.andromeda.dreamshops.model.Image;
 import com.andromeda.dreamshops.response.ApiResponse;
@@ -30,8 +32,12 @@ public class ImageController {
     @PostMapping("/upload")
     public ResponseEntity<ApiResponse> saveImages(@RequestParam List<MultipartFile> files, @RequestParam Long productId){
         try {
-            List<ImageDto> imageDtos = imageService.saveImages(files, productId);
-            return ResponseEntity.ok(new ApiResponse("Upload successful", imageDtos));
+            List<ImageUploadResultDto> results = imageService.saveImages(files, productId);
+            return ResponseEntity.ok(new ApiResponse("Upload successful", results));
+        } catch (ImageUploadException e) {
+            return ResponseEntity.status(INTERNAL_SERVER_ERROR).body(new ApiResponse(e.getMessage(), e.getResults()));
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.status(NOT_FOUND).body(new ApiResponse(e.getMessage(), null));
         } catch (Exception e) {
             return ResponseEntity.status(INTERNAL_SERVER_ERROR).body(new ApiResponse("Upload failed!", e.getMessage()));
         }
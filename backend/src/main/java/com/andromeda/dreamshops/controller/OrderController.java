@@ -2,7 +2,9 @@ package com.andromeda.dreamshops.controller;
 
 import com.andromeda.dreamshops.dto.OrderDto;
 import com.andromeda.dreamshops.enums.OrderStatus;
+import com.andromeda.dreamshops.exceptions.ConcurrentUpdateException;
 import com.andromeda.dreamshops.exceptions.GeneralException;
+import com.andromeda.dreamshops.exceptions.InsufficientStockException;
 import com.andromeda.dreamshops.exceptions.ResourceNotFoundException;
 import com.andromeda.dreamshops.model.Order;
 import com.andromeda.dreamshops.response.ApiResponse;
@@ -30,6 +32,9 @@ public class OrderController {
             Order order = orderService.placeOrder(userId);
             OrderDto orderDto = orderService.convertToDto(order);
             return ResponseEntity.ok(new ApiResponse("Order placed successfully", orderDto));
+        } catch (InsufficientStockException | ConcurrentUpdateException e) {
+            return ResponseEntity.status(CONFLICT)
+                    .body(new ApiResponse(e.getMessage(), null));
         } catch (Exception e) {
             return ResponseEntity.status(INTERNAL_SERVER_ERROR)
                     .body(new ApiResponse("Failed to place order: " + e.getMessage(), null));
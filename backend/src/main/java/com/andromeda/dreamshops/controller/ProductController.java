@@ -2,10 +2,12 @@ package com.andromeda.dreamshops.controller;
 
 
 import com.andromeda.dreamshops.dto.ProductDto;
+import com.andromeda.dreamshops.dto.ProductPageDto;
 import com.andromeda.dreamshops.exceptions.AlreadyExistsException;
 import com.andromeda.dreamshops.exceptions.ResourceNotFoundException;
 import com.andromeda.dreamshops.model.Product;
 import com.andromeda.dreamshops.request.AddProductRequest;
+import com.andromeda.dreamshops.request.CursorPageRequest;
 import com.andromeda.dreamshops.request.ProductUpdateRequest;
 import com.andromeda.dreamshops.response.ApiResponse;
 import com.andromeda.dreamshops.service.product.IProductService;
@@ -25,14 +27,14 @@ public class ProductController {
 
     private final IProductService productService;
 
-    //get all products
+    //get all products, one page at a time (?cursor=&size=)
     @GetMapping("/all")
-    public ResponseEntity<ApiResponse> getAllProducts(){
-        List<Product> products = productService.getAllProducts();
-        List<ProductDto> convertedProducts = productService.getConvertedProducts(products);
-        return convertedProducts.isEmpty()
+    public ResponseEntity<ApiResponse> getAllProducts(CursorPageRequest page){
+        List<Product> products = productService.getAllProducts(page);
+        ProductPageDto productPage = productService.getConvertedProductPage(products, page);
+        return productPage.getProducts().isEmpty()
                 ? ResponseEntity.status(NOT_FOUND).body(new ApiResponse("No products found", null))
-                : ResponseEntity.ok(new ApiResponse("Products retrieved successfully", convertedProducts));
+                : ResponseEntity.ok(new ApiResponse("Products retrieved successfully", productPage));
     }
 
     //get product by id
@@ -92,14 +94,14 @@ public class ProductController {
     // search products by brand and name
     @GetMapping("products/by/brand-and-name")
     public ResponseEntity<ApiResponse> getProductByBrandAndName(@RequestParam String brandName,
-                                                                @RequestParam String productName) {
+                                                                @RequestParam String productName, CursorPageRequest page) {
         try {
-            List<Product> products = productService.getProductByBrandAndName(brandName, productName);
-            List<ProductDto> convertedProducts = productService.getConvertedProducts(products);
-            return  convertedProducts.isEmpty()
+            List<Product> products = productService.getProductByBrandAndName(brandName, productName, page);
+            ProductPageDto productPage = productService.getConvertedProductPage(products, page);
+            return  productPage.getProducts().isEmpty()
                 ? ResponseEntity.status(NOT_FOUND)
                     .body(new ApiResponse("No products found for the given brand and name", null))
-                : ResponseEntity.ok(new ApiResponse("Products retrieved successfully", convertedProducts));
+                : ResponseEntity.ok(new ApiResponse("Products retrieved successfully", productPage));
         } catch (Exception e) {
             return ResponseEntity.status(INTERNAL_SERVER_ERROR)
                     .body(new ApiResponse( e.getMessage(), null));
@@ -109,14 +111,14 @@ public class ProductController {
     // search products by category and brand
     @GetMapping("products/by/category-and-brand")
     public ResponseEntity<ApiResponse> getProductByCategoryAndBrand(@RequestParam String category,
-                                                                      @RequestParam String brand) {
+                                                                      @RequestParam String brand, CursorPageRequest page) {
         try {
-            List<Product> products = productService.getProductByCategoryAndBrand(category, brand);
-            List<ProductDto> convertedProducts = productService.getConvertedProducts(products);
-            return convertedProducts.isEmpty()
+            List<Product> products = productService.getProductByCategoryAndBrand(category, brand, page);
+            ProductPageDto productPage = productService.getConvertedProductPage(products, page);
+            return productPage.getProducts().isEmpty()
                 ? ResponseEntity.status(NOT_FOUND)
                     .body(new ApiResponse("No products found for the given category and brand", null))
-                :ResponseEntity.ok(new ApiResponse("Products retrieved successfully", convertedProducts));
+                :ResponseEntity.ok(new ApiResponse("Products retrieved successfully", productPage));
         } catch (Exception e) {
             return ResponseEntity.status(INTERNAL_SERVER_ERROR)
                     .body(new ApiResponse(e.getMessage(), null));
@@ -125,14 +127,14 @@ public class ProductController {
 
     // search products by name - iphone 17
     @GetMapping("products/by/name/products")
-    public ResponseEntity<ApiResponse> getProductsByName(@RequestParam String name) {
+    public ResponseEntity<ApiResponse> getProductsByName(@RequestParam String name, CursorPageRequest page) {
         try {
-            List<Product> products = productService.getProductsByName(name);
-            List<ProductDto> convertedProducts = productService.getConvertedProducts(products);
-            return convertedProducts.isEmpty()
+            List<Product> products = productService.getProductsByName(name, page);
+            ProductPageDto productPage = productService.getConvertedProductPage(products, page);
+            return productPage.getProducts().isEmpty()
                 ? ResponseEntity.status(NOT_FOUND)
                         .body(new ApiResponse("No products found for the given name", null))
-                : ResponseEntity.ok(new ApiResponse("Products retrieved successfully", convertedProducts));
+                : ResponseEntity.ok(new ApiResponse("Products retrieved successfully", productPage));
         } catch (Exception e) {
             return ResponseEntity.status(INTERNAL_SERVER_ERROR)
                     .body(new ApiResponse(e.getMessage(), null));
@@ -141,14 +143,14 @@ public class ProductController {
 
     // search products by brand - Apple , Samsung , Dell , HP , Sony , LG , Asus , Acer
     @GetMapping("/product/by-brand")
-    public ResponseEntity<ApiResponse> getProductsByBrand(@RequestParam String brand) {
+    public ResponseEntity<ApiResponse> getProductsByBrand(@RequestParam String brand, CursorPageRequest page) {
         try {
-            List<Product> products = productService.getProductsByBrand(brand);
-            List<ProductDto> convertedProducts = productService.getConvertedProducts(products);
-            return convertedProducts.isEmpty()
+            List<Product> products = productService.getProductsByBrand(brand, page);
+            ProductPageDto productPage = productService.getConvertedProductPage(products, page);
+            return productPage.getProducts().isEmpty()
                 ? ResponseEntity.status(NOT_FOUND)
                         .body(new ApiResponse("No products found for the given brand", null))
-                : ResponseEntity.ok(new ApiResponse("Products retrieved successfully", convertedProducts));
+                : ResponseEntity.ok(new ApiResponse("Products retrieved successfully", productPage));
         } catch (Exception e) {
             return ResponseEntity.status(INTERNAL_SERVER_ERROR)
                     .body(new ApiResponse(e.getMessage(), null));
@@ -157,14 +159,14 @@ public class ProductController {
 
     // search products by category - laptops , phones , gadgets , accessories , peripherals , software , gaming , networking
     @GetMapping("/product/by/category/all/products")
-    public ResponseEntity<ApiResponse> getAllProductsByCategory(@RequestParam String category) {
+    public ResponseEntity<ApiResponse> getAllProductsByCategory(@RequestParam String category, CursorPageRequest page) {
         try {
-            List<Product> products = productService.getAllProductsByCategory(category);
-            List<ProductDto> convertedProducts = productService.getConvertedProducts(products);
-            return convertedProducts.isEmpty()
+            List<Product> products = productService.getAllProductsByCategory(category, page);
+            ProductPageDto productPage = productService.getConvertedProductPage(products, page);
+            return productPage.getProducts().isEmpty()
                 ? ResponseEntity.status(NOT_FOUND)
                         .body(new ApiResponse("No products found for the given category", null))
-                : ResponseEntity.ok(new ApiResponse("Products retrieved successfully", convertedProducts));
+                : ResponseEntity.ok(new ApiResponse("Products retrieved successfully", productPage));
         } catch (Exception e) {
             return ResponseEntity.status(INTERNAL_SERVER_ERROR)
                     .body(new ApiResponse(e.getMessage(), null));
@@ -187,12 +189,12 @@ public class ProductController {
     // get all products under a parent category
     // ex - electronics , computers etc.
     @GetMapping("/product/by/parent-category/all")
-    public ResponseEntity<ApiResponse> getAllProductsByParentCategory(@RequestParam String parentCategory){
+    public ResponseEntity<ApiResponse> getAllProductsByParentCategory(@RequestParam String parentCategory, CursorPageRequest page){
         try {
-            List<Product> products = productService.getAllProductsByParentCategory(parentCategory);
-            List<ProductDto> convertedProducts = productService.getConvertedProducts(products);
-            return !convertedProducts.isEmpty()?
-                    ResponseEntity.ok(new ApiResponse("Products found for " + parentCategory +" category: ", convertedProducts)):
+            List<Product> products = productService.getAllProductsByParentCategory(parentCategory, page);
+            ProductPageDto productPage = productService.getConvertedProductPage(products, page);
+            return !productPage.getProducts().isEmpty()?
+                    ResponseEntity.ok(new ApiResponse("Products found for " + parentCategory +" category: ", productPage)):
                     ResponseEntity.status(NOT_FOUND).body(new ApiResponse("No products found for the "+parentCategory+" category!!", null));
         } catch (ResourceNotFoundException e){
             return ResponseEntity.status(NOT_FOUND).body(new ApiResponse("Error: "+ e.getMessage(), null));
@@ -219,52 +221,52 @@ public class ProductController {
 
     // All products in shop id 2
     @GetMapping("/shops/{shopId}/products")
-    public ResponseEntity<ApiResponse> getAllProductsByShopId(@PathVariable Long shopId) {
-        List<Product> products = productService.getAllProductsByShopId(shopId);
-        List<ProductDto> convertedProducts = productService.getConvertedProducts(products);
-        return convertedProducts.isEmpty()
+    public ResponseEntity<ApiResponse> getAllProductsByShopId(@PathVariable Long shopId, CursorPageRequest page) {
+        List<Product> products = productService.getAllProductsByShopId(shopId, page);
+        ProductPageDto productPage = productService.getConvertedProductPage(products, page);
+        return productPage.getProducts().isEmpty()
                 ? ResponseEntity.status(NOT_FOUND).body(new ApiResponse("No products found for shop id: " + shopId, null))
-                : ResponseEntity.ok(new ApiResponse("Products for shop id: " + shopId + " retrieved successfully", convertedProducts));
+                : ResponseEntity.ok(new ApiResponse("Products for shop id: " + shopId + " retrieved successfully", productPage));
     }
 
     //ALl products in Rio Electronics
     @GetMapping("/shops/shopName/products")
-    public ResponseEntity<ApiResponse> getAllProductsByShopName(@RequestParam String shopName) {
-        List<Product> products = productService.getAllProductsByShopName(shopName);
-        List<ProductDto> convertedProducts = productService.getConvertedProducts(products);
-        return convertedProducts.isEmpty()
+    public ResponseEntity<ApiResponse> getAllProductsByShopName(@RequestParam String shopName, CursorPageRequest page) {
+        List<Product> products = productService.getAllProductsByShopName(shopName, page);
+        ProductPageDto productPage = productService.getConvertedProductPage(products, page);
+        return productPage.getProducts().isEmpty()
                 ? ResponseEntity.status(NOT_FOUND).body(new ApiResponse("No products found for shop name: " + shopName, null))
-                : ResponseEntity.ok(new ApiResponse("Products for shop name: " + shopName + " retrieved successfully", convertedProducts));
+                : ResponseEntity.ok(new ApiResponse("Products for shop name: " + shopName + " retrieved successfully", productPage));
     }
 
     // All gadgets in Rio Electronics
     @GetMapping("/products/by/shop-and-category")
-    public ResponseEntity<ApiResponse> getAllProductsByShopAndCategory(@RequestParam String shopName, @RequestParam String categoryName) {
-        List<Product> products = productService.getAllProductsByShopAndCategory(shopName, categoryName);
-        List<ProductDto> convertedProducts = productService.getConvertedProducts(products);
-        return convertedProducts.isEmpty()
+    public ResponseEntity<ApiResponse> getAllProductsByShopAndCategory(@RequestParam String shopName, @RequestParam String categoryName, CursorPageRequest page) {
+        List<Product> products = productService.getAllProductsByShopAndCategory(shopName, categoryName, page);
+        ProductPageDto productPage = productService.getConvertedProductPage(products, page);
+        return productPage.getProducts().isEmpty()
                 ? ResponseEntity.status(NOT_FOUND).body(new ApiResponse("No products found for shop: " + shopName + " and category: " + categoryName, null))
-                : ResponseEntity.ok(new ApiResponse("Products for shop: " + shopName + " and category: " + categoryName + " retrieved successfully", convertedProducts));
+                : ResponseEntity.ok(new ApiResponse("Products for shop: " + shopName + " and category: " + categoryName + " retrieved successfully", productPage));
     }
 
     // All Apple products in Rio Electronics (laptops , phones , gadgets etc)
     @GetMapping("/products/by/shop-and-brand")
-    public ResponseEntity<ApiResponse> getAllProductsByShopAndBrand(@RequestParam String shopName, @RequestParam String brand) {
-        List<Product> products = productService.getAllProductsByShopAndBrand(shopName, brand);
-        List<ProductDto> convertedProducts = productService.getConvertedProducts(products);
-        return convertedProducts.isEmpty()
+    public ResponseEntity<ApiResponse> getAllProductsByShopAndBrand(@RequestParam String shopName, @RequestParam String brand, CursorPageRequest page) {
+        List<Product> products = productService.getAllProductsByShopAndBrand(shopName, brand, page);
+        ProductPageDto productPage = productService.getConvertedProductPage(products, page);
+        return productPage.getProducts().isEmpty()
                 ? ResponseEntity.status(NOT_FOUND).body(new ApiResponse("No products found for shop: " + shopName + " and brand: " + brand, null))
-                : ResponseEntity.ok(new ApiResponse("Products for shop: " + shopName + " and brand: " + brand + " retrieved successfully", convertedProducts));
+                : ResponseEntity.ok(new ApiResponse("Products for shop: " + shopName + " and brand: " + brand + " retrieved successfully", productPage));
     }
 
     // All Apple phones in Rio Electronics
     @GetMapping("/products/by/shop-brand-and-category")
-    public ResponseEntity<ApiResponse> getAllProductsByShopBrandAndCategory(@RequestParam String shopName, @RequestParam String brand, @RequestParam String categoryName) {
-        List<Product> products = productService.getAllProductsByShopBrandAndCategory(shopName, brand, categoryName);
-        List<ProductDto> convertedProducts = productService.getConvertedProducts(products);
-        return convertedProducts.isEmpty()
+    public ResponseEntity<ApiResponse> getAllProductsByShopBrandAndCategory(@RequestParam String shopName, @RequestParam String brand, @RequestParam String categoryName, CursorPageRequest page) {
+        List<Product> products = productService.getAllProductsByShopBrandAndCategory(shopName, brand, categoryName, page);
+        ProductPageDto productPage = productService.getConvertedProductPage(products, page);
+        return productPage.getProducts().isEmpty()
                 ? ResponseEntity.status(NOT_FOUND).body(new ApiResponse("No products found for shop: " + shopName + ", brand: " + brand + " and category: " + categoryName, null))
-                : ResponseEntity.ok(new ApiResponse("Products for shop: " + shopName + ", brand: " + brand + " and category: " + categoryName + " retrieved successfully", convertedProducts));
+                : ResponseEntity.ok(new ApiResponse("Products for shop: " + shopName + ", brand: " + brand + " and category: " + categoryName + " retrieved successfully", productPage));
     }
 
     // iPhone 13 in Rio Electronics
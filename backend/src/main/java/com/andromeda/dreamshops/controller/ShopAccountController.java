@@ -70,8 +70,8 @@ public class ShopAccountController {
     @PutMapping("/shop-account/shop/{shopId}/logo")
     public ResponseEntity<ApiResponse> updateShopLogo(@PathVariable Long shopId, @RequestParam("logo") MultipartFile logo) {
         try {
-            ShopAccountDto shopAccountDto = shopAccountService.updateShopLogo(shopId, logo);
-            return ResponseEntity.ok(new ApiResponse("Shop logo updated", shopAccountDto));
+            String logoUrl = shopAccountService.updateShopLogo(shopId, logo);
+            return ResponseEntity.ok(new ApiResponse("Shop logo updated", logoUrl));
         } catch (ResourceNotFoundException e) {
             return ResponseEntity.status(NOT_FOUND).body(new ApiResponse("Shop Account not found for shop id " + shopId, e));
         }catch(ResourceProcessingException e){
@@ -85,8 +85,8 @@ public class ShopAccountController {
     @PutMapping("/shop-account/shop/{shopId}/banner")
     public ResponseEntity<ApiResponse> updateShopBanner(@PathVariable Long shopId, @RequestParam("banner") MultipartFile banner) {
         try {
-            ShopAccountDto shopAccountDto = shopAccountService.updateShopBanner(shopId, banner);
-            return ResponseEntity.ok(new ApiResponse("Shop banner updated", shopAccountDto));
+            String bannerUrl = shopAccountService.updateShopBanner(shopId, banner);
+            return ResponseEntity.ok(new ApiResponse("Shop banner updated", bannerUrl));
         } catch (ResourceNotFoundException e) {
             return ResponseEntity.status(NOT_FOUND).body(new ApiResponse("Shop Account not found for shop id " + shopId, e));
         } catch (ResourceProcessingException e) {
@@ -143,7 +143,7 @@ public class ShopController {
     public ResponseEntity<ApiResponse> deleteShopImages(@PathVariable Long shopId) {
         try {
             shopService.deleteShopImages(shopId);
-            return ResponseEntity.ok(new ApiResponse("Shop images deleted successfully", shopId));
+            return ResponseEntity.ok(new ApiResponse("Shop images will be deleted shortly", shopId));
         } catch (Exception e) {
             return ResponseEntity.status(INTERNAL_SERVER_ERROR).body(new ApiResponse(e.getMessage(), null));
         }
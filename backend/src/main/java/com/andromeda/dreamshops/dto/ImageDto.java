@@ -7,4 +7,7 @@ public class ImageDto {
     private Long id;
     private String fileName;
     private String imageUrl;
+    private String thumbnailUrl;
+    private String mediumUrl;
+    private String largeUrl;
 }
@@ -0,0 +1,16 @@
+package com.andromeda.dreamshops.dto;
+
+import com.andromeda.dreamshops.enums.UploadStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImageUploadResultDto {
+    private String fileName;
+    private UploadStatus status;
+    private ImageDto image;
+    private String error;
+}
@@ -0,0 +1,13 @@
+package com.andromeda.dreamshops.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class ProductPageDto {
+    private List<ProductDto> products;
+    private int size;
+    private boolean hasMore;
+    private Long nextCursor; // pass as ?cursor= to get the next page, null on the last page
+}
@@ -1,7 +1,10 @@
 package com.andromeda.dreamshops.dto;
 
+import lombok.Data;
+
 import java.util.List;
 
+@Data
 public class UserAccountDto {
     private Long id;
     private String username;
@@ -0,0 +1,9 @@
+package com.andromeda.dreamshops.enums;
+
+// what an AssetDeletion removes from the storage
+public enum AssetType {
+    // a folder with everything in it, e.g. all images of a shop
+    FOLDER,
+    // an image by public id, together with its ImageVariants
+    IMAGE
+}
@@ -0,0 +1,7 @@
+package com.andromeda.dreamshops.enums;
+
+public enum CartOperationType {
+    ADD,
+    UPDATE,
+    REMOVE
+}
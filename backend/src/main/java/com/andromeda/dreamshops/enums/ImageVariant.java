@@ -0,0 +1,17 @@
+package com.andromeda.dreamshops.enums;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+// the sizes every product image is also stored in, the longest side is scaled down to maxSize
+@Getter
+@RequiredArgsConstructor
+public enum ImageVariant {
+    THUMBNAIL("thumbnail", 200),
+    MEDIUM("medium", 600),
+    LARGE("large", 1200);
+
+    // appended to the public id of the original, e.g. product-1-phone-thumbnail
+    private final String suffix;
+    private final int maxSize;
+}
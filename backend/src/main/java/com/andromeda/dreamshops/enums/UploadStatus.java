@@ -0,0 +1,8 @@
+package com.andromeda.dreamshops.enums;
+
+public enum UploadStatus {
+    SAVED,
+    FAILED,
+    // uploaded, then deleted again because another file of the same request failed
+    ROLLED_BACK
+}
@@ -0,0 +1,17 @@
+package com.andromeda.dreamshops.exceptions;
+
+import com.andromeda.dreamshops.dto.ImageUploadResultDto;
+import lombok.Getter;
+
+import java.util.List;
+
+// a multi-image upload that was not saved; the results tell what happened to every file
+@Getter
+public class ImageUploadException extends RuntimeException {
+    private final List<ImageUploadResultDto> results;
+
+    public ImageUploadException(String message, List<ImageUploadResultDto> results) {
+        super(message);
+        this.results = results;
+    }
+}
@@ -0,0 +1,7 @@
+package com.andromeda.dreamshops.exceptions;
+
+public class InsufficientStockException extends RuntimeException {
+    public InsufficientStockException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package com.andromeda.dreamshops.exceptions;
+
+import lombok.Getter;
+
+// the node's slice of a flash-sale product can't cover a reservation, see InventoryLedger
+@Getter
+public class InventorySliceExhaustedException extends RuntimeException {
+    private final Long productId;
+    private final int quantity;
+
+    public InventorySliceExhaustedException(Long productId, int quantity) {
+        super("The inventory slice of product " + productId + " can't cover " + quantity + " units");
+        this.productId = productId;
+        this.quantity = quantity;
+    }
+}
@@ -0,0 +1,8 @@
+package com.andromeda.dreamshops.exceptions;
+
+// thrown when a bounded resource is saturated and the request is turned away instead of queued; answered with 503
+public class ServiceBusyException extends RuntimeException {
+    public ServiceBusyException(String message) {
+        super(message);
+    }
+}
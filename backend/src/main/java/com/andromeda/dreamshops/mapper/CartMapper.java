@@ -0,0 +1,19 @@
+package com.andromeda.dreamshops.mapper;
+
+import com.andromeda.dreamshops.dto.CartDto;
+import com.andromeda.dreamshops.dto.CartItemDto;
+import com.andromeda.dreamshops.model.Cart;
+import com.andromeda.dreamshops.model.CartItem;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+@Mapper(config = MapperSpringConfig.class, uses = ProductMapper.class)
+public interface CartMapper {
+
+    @Mapping(target = "cartId", source = "id")
+    @Mapping(target = "cartItems", source = "items")
+    CartDto toDto(Cart cart);
+
+    @Mapping(target = "itemId", source = "id")
+    CartItemDto toDto(CartItem cartItem);
+}
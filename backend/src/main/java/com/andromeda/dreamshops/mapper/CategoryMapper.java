@@ -0,0 +1,14 @@
+package com.andromeda.dreamshops.mapper;
+
+import com.andromeda.dreamshops.dto.CategoryDto;
+import com.andromeda.dreamshops.model.Category;
+import org.mapstruct.Mapper;
+
+import java.util.List;
+
+@Mapper(config = MapperSpringConfig.class)
+public interface CategoryMapper {
+    CategoryDto toDto(Category category);
+
+    List<CategoryDto> toDtoList(List<Category> categories);
+}
@@ -0,0 +1,19 @@
+package com.andromeda.dreamshops.mapper;
+
+import org.mapstruct.InjectionStrategy;
+import org.mapstruct.MapperConfig;
+import org.mapstruct.MappingConstants;
+import org.mapstruct.ReportingPolicy;
+
+/**
+ * Shared configuration for the MapStruct mappers.
+ * The implementations are generated at compile time as plain getter/setter code,
+ * registered as Spring beans and wired through their constructors like the rest of the services.
+ */
+@MapperConfig(
+        componentModel = MappingConstants.ComponentModel.SPRING,
+        injectionStrategy = InjectionStrategy.CONSTRUCTOR,
+        unmappedTargetPolicy = ReportingPolicy.ERROR
+)
+public interface MapperSpringConfig {
+}
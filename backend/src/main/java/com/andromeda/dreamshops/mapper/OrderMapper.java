@@ -0,0 +1,27 @@
+package com.andromeda.dreamshops.mapper;
+
+import com.andromeda.dreamshops.dto.OrderDto;
+import com.andromeda.dreamshops.dto.OrderItemDto;
+import com.andromeda.dreamshops.model.Order;
+import com.andromeda.dreamshops.model.OrderItem;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+import java.util.List;
+
+@Mapper(config = MapperSpringConfig.class)
+public interface OrderMapper {
+
+    @Mapping(target = "id", source = "orderId")
+    @Mapping(target = "userId", source = "user.id")
+    @Mapping(target = "shopId", source = "shop.id")
+    @Mapping(target = "items", source = "orderItems")
+    OrderDto toDto(Order order);
+
+    List<OrderDto> toDtoList(List<Order> orders);
+
+    @Mapping(target = "productId", source = "product.id")
+    @Mapping(target = "productName", source = "product.name")
+    @Mapping(target = "productBrand", source = "product.brand")
+    OrderItemDto toDto(OrderItem orderItem);
+}
@@ -0,0 +1,22 @@
+package com.andromeda.dreamshops.mapper;
+
+import com.andromeda.dreamshops.dto.ImageDto;
+import com.andromeda.dreamshops.dto.ProductDto;
+import com.andromeda.dreamshops.model.Image;
+import com.andromeda.dreamshops.model.Product;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+import java.util.List;
+
+@Mapper(config = MapperSpringConfig.class, uses = CategoryMapper.class)
+public interface ProductMapper {
+
+    // only the id is read from the shop, so a lazy shop proxy is never initialized
+    @Mapping(target = "shopId", source = "shop.id")
+    ProductDto toDto(Product product);
+
+    List<ProductDto> toDtoList(List<Product> products);
+
+    ImageDto toDto(Image image);
+}
@@ -0,0 +1,23 @@
+package com.andromeda.dreamshops.mapper;
+
+import com.andromeda.dreamshops.dto.ShopAccountDto;
+import com.andromeda.dreamshops.dto.ShopDto;
+import com.andromeda.dreamshops.model.Shop;
+import com.andromeda.dreamshops.model.ShopAccount;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+import java.util.List;
+
+@Mapper(config = MapperSpringConfig.class)
+public interface ShopMapper {
+
+    // products and orders are queried and filled in by ShopService
+    @Mapping(target = "products", ignore = true)
+    @Mapping(target = "orders", ignore = true)
+    ShopDto toDto(Shop shop);
+
+    ShopAccountDto toDto(ShopAccount shopAccount);
+
+    List<ShopAccountDto> toAccountDtoList(List<ShopAccount> shopAccounts);
+}
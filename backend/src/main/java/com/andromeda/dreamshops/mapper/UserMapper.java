@@ -0,0 +1,22 @@
+package com.andromeda.dreamshops.mapper;
+
+import com.andromeda.dreamshops.dto.AddressDto;
+import com.andromeda.dreamshops.dto.UserAccountDto;
+import com.andromeda.dreamshops.dto.UserDto;
+import com.andromeda.dreamshops.model.Address;
+import com.andromeda.dreamshops.model.User;
+import com.andromeda.dreamshops.model.UserAccount;
+import org.mapstruct.Mapper;
+
+import java.util.List;
+
+@Mapper(config = MapperSpringConfig.class, uses = {OrderMapper.class, CartMapper.class})
+public interface UserMapper {
+    UserDto toDto(User user);
+
+    UserAccountDto toDto(UserAccount userAccount);
+
+    AddressDto toDto(Address address);
+
+    List<AddressDto> toAddressDtoList(List<Address> addresses);
+}
@@ -0,0 +1,44 @@
+package com.andromeda.dreamshops.model;
+
+import com.andromeda.dreamshops.enums.AssetType;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * An outbox entry: a stored asset that has to be deleted from the storage because the shop, product or image
+ * it belonged to was deleted. It is saved in the same transaction as that delete and processed afterwards
+ * by {@link com.andromeda.dreamshops.service.asset.AssetGarbageCollector}.
+ * <p>
+ * {@code nextAttemptAt} is when the entry is due next; it is null once the attempts are used up,
+ * and such entries stay for a look by hand.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(indexes = @Index(name = "idx_asset_deletion_next_attempt_at", columnList = "nextAttemptAt"))
+public class AssetDeletion implements OutboxEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    private AssetType type;
+    private String assetKey;
+    private int attempts;
+    private LocalDateTime createdAt;
+    private LocalDateTime nextAttemptAt;
+    @Column(length = 1000)
+    private String lastError;
+
+    public AssetDeletion(AssetType type, String assetKey) {
+        this.type = type;
+        this.assetKey = assetKey;
+        this.createdAt = LocalDateTime.now();
+        this.nextAttemptAt = this.createdAt;
+    }
+}
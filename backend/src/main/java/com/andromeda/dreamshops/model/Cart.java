@@ -5,7 +5,10 @@ import lombok.*;
 
 
 import java.math.BigDecimal;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 
 @Getter
@@ -17,36 +20,112 @@ public class Cart {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
+
+    // optimistic locking: concurrent updates of the same row fail instead of overwriting each other
+    @Version
+    private long version;
     private BigDecimal totalAmount = BigDecimal.ZERO;
 
+    // the total in minor units, changed by the difference of every item change; totalAmount mirrors it
+    @Transient
+    @Setter(AccessLevel.NONE)
+    private long totalMinorUnits;
+
+    // change the items through addItem/removeItem, they keep the total and the product index up to date
     @OneToMany(mappedBy = "cart", cascade = CascadeType.ALL, orphanRemoval = true)
     private Set<CartItem> items = new HashSet<>();
 
+    // items by product id, built on the first lookup; at most one item per product (unique in cart_item too)
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Map<Long, CartItem> itemsByProductId;
+
     @OneToOne
     @JoinColumn(name = "user_id")
     private User user;
 
     
+    /**
+     * Adds the item to the cart. If the cart already has an item for the same product,
+     * the quantity is merged into that item instead, at the price of the new one.
+     */
     public void addItem(CartItem item){
-        this.items.add(item);
+        CartItem existing = findItem(item.getProductId()).orElse(null);
+        if (existing != null && existing != item) {
+            updateItem(existing, existing.getQuantity() + item.getQuantity(), item.getUnitPrice());
+            return;
+        }
+        if (this.items.add(item)) {
+            changeTotal(item.getTotalMinorUnits());
+            if (itemsByProductId != null && item.getProductId() != null) {
+                itemsByProductId.put(item.getProductId(), item);
+            }
+        }
         item.setCart(this);
-        updateTotalAmount();
     }
 
     public void removeItem(CartItem item) {
-        this.items.remove(item);
+        if (this.items.remove(item)) {
+            changeTotal(-item.getTotalMinorUnits());
+            if (itemsByProductId != null && item.getProductId() != null) {
+                itemsByProductId.remove(item.getProductId(), item);
+            }
+        }
         item.setCart(null);
-        updateTotalAmount();
     }
 
-
-    private void updateTotalAmount() {
-        this.totalAmount = items.stream().map(item -> {
-            BigDecimal unitPrice = item.getUnitPrice();
-            if (unitPrice == null) {
-                return BigDecimal.ZERO;
+    // looks the line up by product id without touching (and so loading) the products of the other lines
+    public Optional<CartItem> findItem(Long productId) {
+        if (productId == null) {
+            return Optional.empty();
+        }
+        if (itemsByProductId == null) {
+            Map<Long, CartItem> index = new HashMap<>();
+            for (CartItem item : items) {
+                if (item.getProductId() != null) {
+                    index.put(item.getProductId(), item);
+                }
             }
-            return unitPrice.multiply(BigDecimal.valueOf(item.getQuantity()));
-        }).reduce(BigDecimal.ZERO, BigDecimal::add);
+            itemsByProductId = index;
+        }
+        return Optional.ofNullable(itemsByProductId.get(productId));
+    }
+
+    public void setItems(Set<CartItem> items) {
+        this.items = items;
+        this.itemsByProductId = null;
+    }
+
+    public void clearItems() {
+        this.items.clear();
+        this.itemsByProductId = null;
+        changeTotal(-this.totalMinorUnits);
+    }
+
+    // changes a line of the cart, the total only moves by the difference of that line
+    public void updateItem(CartItem item, int quantity, BigDecimal unitPrice) {
+        long before = item.getTotalMinorUnits();
+        item.setQuantity(quantity);
+        item.setUnitPrice(unitPrice);
+        item.setTotalPrice();
+        if (this.items.contains(item)) {
+            changeTotal(item.getTotalMinorUnits() - before);
+        }
+    }
+
+    public void setTotalAmount(BigDecimal totalAmount) {
+        this.totalAmount = totalAmount == null ? BigDecimal.ZERO : totalAmount;
+        this.totalMinorUnits = MinorUnits.of(this.totalAmount);
+    }
+
+    private void changeTotal(long delta) {
+        this.totalMinorUnits = Math.addExact(this.totalMinorUnits, delta);
+        this.totalAmount = MinorUnits.toDecimal(this.totalMinorUnits);
+    }
+
+    @PostLoad
+    private void loadTotal() {
+        this.totalMinorUnits = MinorUnits.of(this.totalAmount);
     }
 }
@@ -11,16 +11,28 @@ import java.math.BigDecimal;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_cart_item_cart_id_product_id", columnNames = {"cart_id", "product_id"}))
 public class CartItem {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // pooled ids (50 per round trip) instead of IDENTITY, so Hibernate can batch the inserts; see id-generator-seed.sql
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "cart_item_id")
+    @TableGenerator(name = "cart_item_id", table = "id_generator", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "cart_item", allocationSize = 50)
     private Long id;
+
+    // optimistic locking: concurrent updates of the same row fail instead of overwriting each other
+    @Version
+    private long version;
     private int quantity;
     private BigDecimal unitPrice;
     private BigDecimal totalPrice;
 
+    @Transient
+    @Setter(AccessLevel.NONE)
+    private long unitPriceMinorUnits;
+
     //Many cartItems can have one product . like many people can buy same product at the same time
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name="product_id")
     private Product product;
 
@@ -29,11 +41,26 @@ public class CartItem {
     @JoinColumn(name="cart_id")
     private Cart cart;
 
+    // the id of a lazy product proxy is known without loading the product
+    public Long getProductId() {
+        return product == null ? null : product.getId();
+    }
+
+    public void setUnitPrice(BigDecimal unitPrice) {
+        this.unitPrice = unitPrice;
+        this.unitPriceMinorUnits = MinorUnits.of(unitPrice);
+    }
+
+    public long getTotalMinorUnits() {
+        return MinorUnits.lineTotal(unitPriceMinorUnits, quantity);
+    }
+
     public void setTotalPrice() {
-        if (unitPrice != null && quantity > 0) {
-            this.totalPrice = this.unitPrice.multiply(new BigDecimal(quantity));
-        } else {
-            this.totalPrice = BigDecimal.ZERO;
-        }
+        this.totalPrice = MinorUnits.toDecimal(getTotalMinorUnits());
+    }
+
+    @PostLoad
+    private void loadUnitPrice() {
+        this.unitPriceMinorUnits = MinorUnits.of(unitPrice);
     }
 }
@@ -1,5 +1,6 @@
 package com.andromeda.dreamshops.model;
 
+import com.andromeda.dreamshops.service.category.CategoryTreeInvalidator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
@@ -11,6 +12,7 @@ import java.util.List;
 @Setter
 @NoArgsConstructor
 @Entity
+@EntityListeners(CategoryTreeInvalidator.class)
 public class Category {
 
     @Id
@@ -16,7 +16,10 @@ import java.sql.Blob;
 public class Image {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // pooled ids (50 per round trip) instead of IDENTITY, so Hibernate can batch the inserts; see id-generator-seed.sql
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "image_id")
+    @TableGenerator(name = "image_id", table = "id_generator", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "image", allocationSize = 50)
     private Long id;
     private String fileName;
     private String fileType;
@@ -24,6 +27,11 @@ public class Image {
     private String imageUrl;
     private String publicId;
 
+    // smaller sizes for listings, see ImageVariant; null if the file could not be decoded as an image
+    private String thumbnailUrl;
+    private String mediumUrl;
+    private String largeUrl;
+
     @ManyToOne
     @JoinColumn(name="product_id")
     private Product product;
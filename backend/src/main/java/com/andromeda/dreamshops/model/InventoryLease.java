@@ -0,0 +1,44 @@
+package com.andromeda.dreamshops.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * A slice of a product's stock that one application node took out of {@link Product#getInventory()}
+ * to hand out from memory, see {@link com.andromeda.dreamshops.service.inventory.InventoryLedger}.
+ * <p>
+ * {@code consumed} is written behind and only tells how far the node has got.
+ * What was really sold from the lease is the sum of the {@link OrderItem}s that point to it,
+ * which is what the unsold rest is computed from when a crashed node's leases are reconciled.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(indexes = {
+        @Index(name = "idx_inventory_lease_node_id", columnList = "nodeId"),
+        @Index(name = "idx_inventory_lease_flushed_at", columnList = "flushedAt")
+})
+public class InventoryLease {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    private Long productId;
+    private String nodeId;
+    private int quantity;
+    private int consumed;
+    private LocalDateTime createdAt;
+    private LocalDateTime flushedAt;
+
+    public InventoryLease(Long productId, String nodeId, int quantity) {
+        this.productId = productId;
+        this.nodeId = nodeId;
+        this.quantity = quantity;
+        this.createdAt = LocalDateTime.now();
+        this.flushedAt = this.createdAt;
+    }
+}
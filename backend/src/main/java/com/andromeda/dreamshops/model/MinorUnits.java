@@ -0,0 +1,31 @@
+package com.andromeda.dreamshops.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Money as a whole number of minor units (cents), which is how cart totals are kept while items change.
+ * BigDecimal is only used where amounts are stored or leave the service (entity columns, DTOs).
+ */
+public final class MinorUnits {
+    public static final int SCALE = 2;
+
+    private MinorUnits() {
+    }
+
+    public static long of(BigDecimal amount) {
+        if (amount == null) {
+            return 0;
+        }
+        return amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toDecimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    // price of `quantity` units, nothing for an empty line
+    public static long lineTotal(long unitPrice, int quantity) {
+        return quantity > 0 ? Math.multiplyExact(unitPrice, quantity) : 0;
+    }
+}
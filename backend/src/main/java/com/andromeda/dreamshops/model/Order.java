@@ -17,8 +17,15 @@ import java.util.Set;
 @Table(name = "orders")
 public class Order {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // pooled ids (50 per round trip) instead of IDENTITY, so Hibernate can batch the inserts; see id-generator-seed.sql
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "orders_id")
+    @TableGenerator(name = "orders_id", table = "id_generator", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "orders", allocationSize = 50)
     private Long orderId;
+
+    // optimistic locking: concurrent updates of the same row fail instead of overwriting each other
+    @Version
+    private long version;
     private LocalDate orderDate;
     private BigDecimal totalAmount;
 
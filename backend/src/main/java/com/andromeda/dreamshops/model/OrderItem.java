@@ -12,11 +12,17 @@ import java.math.BigDecimal;
 @Entity
 public class OrderItem {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // pooled ids (50 per round trip) instead of IDENTITY, so Hibernate can batch the inserts; see id-generator-seed.sql
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "order_item_id")
+    @TableGenerator(name = "order_item_id", table = "id_generator", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "order_item", allocationSize = 50)
     private Long id;
     private int quantity;
     private BigDecimal price;
 
+    // the InventoryLease the stock was reserved from, null when it was taken straight from Product.inventory
+    private Long inventoryLeaseId;
+
     @ManyToOne
     @JoinColumn(name="order_id")
     private Order order;
@@ -0,0 +1,43 @@
+package com.andromeda.dreamshops.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * An email waiting to be sent, saved in the same transaction as the change it is about
+ * (a signup, a new verification code) and sent afterwards by {@link com.andromeda.dreamshops.service.email.EmailOutbox}.
+ * The row is deleted once the mail server accepted the message.
+ * <p>
+ * {@code nextAttemptAt} is when the email is due next; it is null once the attempts are used up.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(indexes = @Index(name = "idx_outbox_email_next_attempt_at", columnList = "nextAttemptAt"))
+public class OutboxEmail implements OutboxEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    private String recipient;
+    private String subject;
+    @Column(columnDefinition = "TEXT")
+    private String body;
+    private int attempts;
+    private LocalDateTime createdAt;
+    private LocalDateTime nextAttemptAt;
+    @Column(length = 1000)
+    private String lastError;
+
+    public OutboxEmail(String recipient, String subject, String body) {
+        this.recipient = recipient;
+        this.subject = subject;
+        this.body = body;
+        this.createdAt = LocalDateTime.now();
+        this.nextAttemptAt = this.createdAt;
+    }
+}
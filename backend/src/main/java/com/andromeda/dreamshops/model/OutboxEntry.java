@@ -0,0 +1,11 @@
+package com.andromeda.dreamshops.model;
+
+/**
+ * A row of an outbox table, processed by {@link com.andromeda.dreamshops.service.outbox.OutboxQueue}.
+ * The table has the columns {@code attempts}, {@code nextAttemptAt} and {@code lastError}.
+ */
+public interface OutboxEntry {
+    Long getId();
+
+    int getAttempts();
+}
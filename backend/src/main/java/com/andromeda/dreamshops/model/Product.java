@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.BatchSize;
 
 import java.math.BigDecimal;
 import java.util.List;
@@ -13,25 +14,40 @@ import java.util.List;
 @Setter
 @NoArgsConstructor
 @Entity
+@Table(indexes = {
+        // composite (filter, id) indexes back the keyset paginated listings in ProductRepository
+        @Index(name = "idx_product_shop_id", columnList = "shop_id, id"),
+        @Index(name = "idx_product_category_id", columnList = "category_id, id"),
+        @Index(name = "idx_product_brand_id", columnList = "brand, id"),
+        @Index(name = "idx_product_name_id", columnList = "name, id")
+})
 public class Product {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
+
+    // optimistic locking: concurrent updates of the same row fail instead of overwriting each other
+    @Version
+    private long version;
     private String name;
     private String brand;
     private BigDecimal price;
     private int inventory;
     private String description;
 
-    @ManyToOne(cascade = CascadeType.ALL)
+    @ManyToOne(fetch = FetchType.LAZY, cascade = CascadeType.ALL)
     @JoinColumn(name = "category_id")
     private Category category;
 
+    // loaded in batches for all products of a listing page instead of one select per product
+    @BatchSize(size = 128)
     @OneToMany(mappedBy = "product", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Image> images;
 
-    @ManyToOne
+    // lazy so that product listings only need the shop id (shop_id column) and
+    // don't drag in the shop with its owner, account and their eager associations
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "shop_id")
     private Shop shop;
 
@@ -39,6 +39,9 @@ public class User {
     @UpdateTimestamp
     private LocalDateTime updatedAt;
 
+    // set when the roles change; tokens issued before no longer carry the right roles, see UserAuthStateCache
+    private LocalDateTime authChangedAt;
+
     @OneToOne(mappedBy = "user", cascade = CascadeType.ALL, orphanRemoval = true)
     private UserAccount userAccount;
 
@@ -0,0 +1,20 @@
+package com.andromeda.dreamshops.repository;
+
+import com.andromeda.dreamshops.model.AssetDeletion;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+
+public interface AssetDeletionRepository extends OutboxRepository<AssetDeletion> {
+
+    @Override
+    @Modifying
+    @Query("update AssetDeletion d set d.nextAttemptAt = :claimedUntil where d.id = :id and d.nextAttemptAt <= :now")
+    int claim(Long id, LocalDateTime now, LocalDateTime claimedUntil);
+
+    @Override
+    @Modifying
+    @Query("update AssetDeletion d set d.attempts = :attempts, d.nextAttemptAt = :nextAttemptAt, d.lastError = :lastError where d.id = :id")
+    int recordFailure(Long id, int attempts, LocalDateTime nextAttemptAt, String lastError);
+}
@@ -0,0 +1,25 @@
+package com.andromeda.dreamshops.repository;
+
+import com.andromeda.dreamshops.model.InventoryLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface InventoryLeaseRepository extends JpaRepository<InventoryLease, Long> {
+
+    List<InventoryLease> findByNodeId(String nodeId);
+
+    List<InventoryLease> findByFlushedAtBefore(LocalDateTime flushedAt);
+
+    @Modifying
+    @Query("update InventoryLease l set l.consumed = :consumed, l.flushedAt = :flushedAt where l.id = :id")
+    int flushConsumed(Long id, int consumed, LocalDateTime flushedAt);
+
+    // deletes the lease only if it is still stale, so two nodes never reconcile the same lease
+    @Modifying
+    @Query("delete from InventoryLease l where l.id = :id and l.flushedAt < :staleBefore")
+    int deleteIfStale(Long id, LocalDateTime staleBefore);
+}
@@ -0,0 +1,37 @@
+package com.andromeda.dreamshops.repository;
+
+import java.util.List;
+import java.util.SortedMap;
+
+/**
+ * Set based stock updates for {@link com.andromeda.dreamshops.model.Product#getInventory()},
+ * mixed into {@link ProductRepository}.
+ * Quantities are keyed by product id; a sorted map makes every caller lock the rows in the same order.
+ */
+public interface InventoryRepository {
+
+    /**
+     * Takes the quantities out of stock with one conditional update per product
+     * ({@code inventory = inventory - qty where inventory >= qty}), sent as a single JDBC batch.
+     * Products that don't have enough stock are left untouched.
+     * @return ids of the products that could not be reserved, empty if all of them were
+     */
+    List<Long> reserveInventory(SortedMap<Long, Integer> quantitiesByProductId);
+
+    /**
+     * Puts the quantities back into stock, as a single JDBC batch.
+     */
+    void restockInventory(SortedMap<Long, Integer> quantitiesByProductId);
+
+    /**
+     * Moves up to {@code maxQuantity} units of a product out of stock, for an inventory lease.
+     * Locks the product row until the surrounding transaction ends, so it must run in one.
+     * @return the number of units taken, 0 if the product is out of stock or does not exist
+     */
+    int takeInventory(Long productId, int maxQuantity);
+
+    /**
+     * @return the total quantity of the order items that were reserved from the given inventory lease
+     */
+    int countUnitsSoldFromLease(Long leaseId);
+}
@@ -0,0 +1,73 @@
+package com.andromeda.dreamshops.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * JDBC implementation of {@link InventoryRepository}.
+ * Runs on the connection of the surrounding JPA transaction, so a failed order rolls the whole batch back.
+ * The statements bypass the persistence context: Product entities already loaded keep the old inventory.
+ * They do bump the product's version, so such a stale entity can't be saved over the new stock.
+ */
+@RequiredArgsConstructor
+public class InventoryRepositoryImpl implements InventoryRepository {
+    private static final String RESERVE_SQL =
+            "update product set inventory = inventory - ?, version = version + 1 where id = ? and inventory >= ?";
+    private static final String RESTOCK_SQL =
+            "update product set inventory = inventory + ?, version = version + 1 where id = ?";
+    private static final String LOCK_INVENTORY_SQL =
+            "select inventory from product where id = ? for update";
+    private static final String TAKE_SQL =
+            "update product set inventory = inventory - ?, version = version + 1 where id = ?";
+    private static final String SOLD_FROM_LEASE_SQL =
+            "select coalesce(sum(quantity), 0) from order_item where inventory_lease_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<Long> reserveInventory(SortedMap<Long, Integer> quantitiesByProductId) {
+        List<Map.Entry<Long, Integer>> lines = new ArrayList<>(quantitiesByProductId.entrySet());
+        int[] updated = jdbcTemplate.batchUpdate(RESERVE_SQL, lines.stream()
+                .map(line -> new Object[]{line.getValue(), line.getKey(), line.getValue()})
+                .toList());
+
+        List<Long> outOfStock = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                outOfStock.add(lines.get(i).getKey());
+            }
+        }
+        return outOfStock;
+    }
+
+    @Override
+    public void restockInventory(SortedMap<Long, Integer> quantitiesByProductId) {
+        jdbcTemplate.batchUpdate(RESTOCK_SQL, quantitiesByProductId.entrySet().stream()
+                .map(line -> new Object[]{line.getValue(), line.getKey()})
+                .toList());
+    }
+
+    @Override
+    public int takeInventory(Long productId, int maxQuantity) {
+        List<Integer> inventory = jdbcTemplate.queryForList(LOCK_INVENTORY_SQL, Integer.class, productId);
+        if (inventory.isEmpty() || inventory.getFirst() == null) {
+            return 0;
+        }
+        int taken = Math.min(Math.max(inventory.getFirst(), 0), maxQuantity);
+        if (taken > 0) {
+            jdbcTemplate.update(TAKE_SQL, taken, productId);
+        }
+        return taken;
+    }
+
+    @Override
+    public int countUnitsSoldFromLease(Long leaseId) {
+        Integer sold = jdbcTemplate.queryForObject(SOLD_FROM_LEASE_SQL, Integer.class, leaseId);
+        return sold == null ? 0 : sold;
+    }
+}
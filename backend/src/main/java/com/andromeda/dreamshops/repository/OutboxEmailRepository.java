@@ -0,0 +1,20 @@
+package com.andromeda.dreamshops.repository;
+
+import com.andromeda.dreamshops.model.OutboxEmail;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+
+public interface OutboxEmailRepository extends OutboxRepository<OutboxEmail> {
+
+    @Override
+    @Modifying
+    @Query("update OutboxEmail e set e.nextAttemptAt = :claimedUntil where e.id = :id and e.nextAttemptAt <= :now")
+    int claim(Long id, LocalDateTime now, LocalDateTime claimedUntil);
+
+    @Override
+    @Modifying
+    @Query("update OutboxEmail e set e.attempts = :attempts, e.nextAttemptAt = :nextAttemptAt, e.lastError = :lastError where e.id = :id")
+    int recordFailure(Long id, int attempts, LocalDateTime nextAttemptAt, String lastError);
+}
@@ -0,0 +1,24 @@
+package com.andromeda.dreamshops.repository;
+
+import com.andromeda.dreamshops.model.OutboxEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.repository.NoRepositoryBean;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * The queries {@link com.andromeda.dreamshops.service.outbox.OutboxQueue} needs from an outbox table;
+ * {@link #claim} and {@link #recordFailure} are declared with their query by each repository.
+ */
+@NoRepositoryBean
+public interface OutboxRepository<T extends OutboxEntry> extends JpaRepository<T, Long> {
+
+    List<T> findByNextAttemptAtLessThanEqualOrderByIdAsc(LocalDateTime now, Pageable pageable);
+
+    // moves the entry out of reach of other nodes while it is processed; 0 if another node claimed it first
+    int claim(Long id, LocalDateTime now, LocalDateTime claimedUntil);
+
+    int recordFailure(Long id, int attempts, LocalDateTime nextAttemptAt, String lastError);
+}
@@ -1,25 +1,49 @@
 package com.andromeda.dreamshops.repository;
 
 import com.andromeda.dreamshops.model.Product;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, InventoryRepository {
 
-    List<Product> findByCategoryName(String category);
+    // catalog listings are keyset paginated on id:
+    // every "page" query returns the products with id > cursor in id order, capped by the limit
+    // so the cost of a page does not grow with the size of the catalog
+    // listings fetch the category in the same select (see LISTING_GRAPH),
+    // images are batch loaded through @BatchSize on Product.images and the shop stays a lazy proxy
+    // so a page costs a constant number of statements instead of 1 + 3N
 
-    List<Product> findByBrand(String brand);
+    String LISTING_GRAPH = "category";
 
-    List<Product> findByCategoryNameAndBrand(String category, String brand);
+    @EntityGraph(attributePaths = LISTING_GRAPH)
+    List<Product> findByIdGreaterThanOrderByIdAsc(Long cursor, Limit limit);
 
-    List<Product> findByName(String name);
+    @EntityGraph(attributePaths = LISTING_GRAPH)
+    List<Product> findByCategoryNameAndIdGreaterThanOrderByIdAsc(String category, Long cursor, Limit limit);
 
-    List<Product> findByBrandAndName(String brand, String name);
+    // products of a whole category sub-tree, the ids come from the category tree snapshot
+    @EntityGraph(attributePaths = LISTING_GRAPH)
+    List<Product> findByCategoryIdInAndIdGreaterThanOrderByIdAsc(Collection<Long> categoryIds, Long cursor, Limit limit);
+
+    @EntityGraph(attributePaths = LISTING_GRAPH)
+    List<Product> findByBrandAndIdGreaterThanOrderByIdAsc(String brand, Long cursor, Limit limit);
+
+    @EntityGraph(attributePaths = LISTING_GRAPH)
+    List<Product> findByCategoryNameAndBrandAndIdGreaterThanOrderByIdAsc(String category, String brand, Long cursor, Limit limit);
+
+    @EntityGraph(attributePaths = LISTING_GRAPH)
+    List<Product> findByNameAndIdGreaterThanOrderByIdAsc(String name, Long cursor, Limit limit);
+
+    @EntityGraph(attributePaths = LISTING_GRAPH)
+    List<Product> findByBrandAndNameAndIdGreaterThanOrderByIdAsc(String brand, String name, Long cursor, Limit limit);
 
     Long countByBrandAndName(String brand, String name);
 
@@ -27,19 +51,27 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
 
     //shop related queries
     Optional<Product> findByIdAndShopId(Long productId, Long shopId);
+    @EntityGraph(attributePaths = LISTING_GRAPH)
     List<Product> findByShopId(Long shopId);
 
+    @EntityGraph(attributePaths = LISTING_GRAPH)
+    List<Product> findByShopIdAndIdGreaterThanOrderByIdAsc(Long shopId, Long cursor, Limit limit);
+
     //Rio Electronics
-    List<Product> findByShopName(String shopName);
+    @EntityGraph(attributePaths = LISTING_GRAPH)
+    List<Product> findByShopNameAndIdGreaterThanOrderByIdAsc(String shopName, Long cursor, Limit limit);
 
     //Rio Electronics , Laptops
-    List<Product> findByShopNameAndCategoryName(String shopName, String categoryName);
+    @EntityGraph(attributePaths = LISTING_GRAPH)
+    List<Product> findByShopNameAndCategoryNameAndIdGreaterThanOrderByIdAsc(String shopName, String categoryName, Long cursor, Limit limit);
 
     //Rio Electronics , Apple
-    List<Product> findByShopNameAndBrand(String shopName, String brand);
+    @EntityGraph(attributePaths = LISTING_GRAPH)
+    List<Product> findByShopNameAndBrandAndIdGreaterThanOrderByIdAsc(String shopName, String brand, Long cursor, Limit limit);
 
     //Rio Electronics , Apple , Laptops
-    List<Product> findByShopNameAndBrandAndCategoryName(String shopName, String brand, String categoryName);
+    @EntityGraph(attributePaths = LISTING_GRAPH)
+    List<Product> findByShopNameAndBrandAndCategoryNameAndIdGreaterThanOrderByIdAsc(String shopName, String brand, String categoryName, Long cursor, Limit limit);
 
     //Rio Electronics , MacBook Pro 14
     Optional<Product> findByShopNameAndName(String shopName, String name);
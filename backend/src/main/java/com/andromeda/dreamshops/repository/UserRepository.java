@@ -1,12 +1,19 @@
 package com.andromeda.dreamshops.repository;
 
 import com.andromeda.dreamshops.model.User;
+import com.andromeda.dreamshops.security.user.UserAuthState;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Optional;
+
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByEmail(String email);
 
     User findByEmail(String email);
+
+    @Query("select new com.andromeda.dreamshops.security.user.UserAuthState(u.enabled, u.authChangedAt) from User u where u.id = :id")
+    Optional<UserAuthState> findAuthStateById(Long id);
 }
@@ -0,0 +1,10 @@
+package com.andromeda.dreamshops.request;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BulkCartRequest {
+    private List<CartLineOperation> operations;
+}
@@ -0,0 +1,12 @@
+package com.andromeda.dreamshops.request;
+
+import com.andromeda.dreamshops.enums.CartOperationType;
+import lombok.Data;
+
+@Data
+public class CartLineOperation {
+    private CartOperationType type;
+    private Long productId;
+    // not used by REMOVE
+    private Integer quantity;
+}
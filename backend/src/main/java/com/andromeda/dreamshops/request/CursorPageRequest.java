@@ -0,0 +1,32 @@
+package com.andromeda.dreamshops.request;
+
+import lombok.Data;
+import org.springframework.data.domain.Limit;
+
+// query parameters for keyset paginated listings: ?cursor=<last id seen>&size=<page size>
+// the first page is requested without a cursor
+@Data
+public class CursorPageRequest {
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private Long cursor;
+    private Integer size;
+
+    public Long cursorOrStart() {
+        return cursor == null || cursor < 0 ? 0L : cursor;
+    }
+
+    // page size clamped to [1, MAX_PAGE_SIZE]
+    public int pageSize() {
+        if (size == null || size < 1) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(size, MAX_PAGE_SIZE);
+    }
+
+    // one row more than the page size is fetched to know if there is a next page
+    public Limit fetchLimit() {
+        return Limit.of(pageSize() + 1);
+    }
+}
@@ -1,11 +1,14 @@
 package com.andromeda.dreamshops.security.config;
 
+import com.andromeda.dreamshops.security.crypto.BoundedPasswordEncoder;
 import com.andromeda.dreamshops.security.jwt.AuthTokenFilter;
 import com.andromeda.dreamshops.security.jwt.JwtAuthEntryPoint;
 import com.andromeda.dreamshops.security.jwt.JwtUtils;
 import com.andromeda.dreamshops.security.user.ShopUserDetailsService;
+import com.andromeda.dreamshops.security.user.UserAuthStateCache;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -21,6 +24,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+import java.time.Duration;
 import java.util.List;
 
 @RequiredArgsConstructor
@@ -31,21 +35,47 @@ public class ShopConfig {
     private final ShopUserDetailsService userDetailsService;
     private final JwtAuthEntryPoint authEntryPoint;
     private final JwtUtils jwtUtils;
+    private final UserAuthStateCache authStateCache;
+    private final MeterRegistry meterRegistry;
+
+    // principals from token claims instead of a user lookup per request, see AuthTokenFilter
+    @Value("${auth.token.stateless-principal:true}")
+    private boolean statelessPrincipal;
 
     private static final List<String> SECURED_URLS = List.of(
             "/api/v1/carts/**",
             "/api/v1/cartItems/**"
             );
 
+    // metrics are operational data, not for customers
+    private static final List<String> ADMIN_URLS = List.of(
+            "/actuator/**"
+            );
+
+
+    @Value("${auth.bcrypt.strength:10}")
+    private int bcryptStrength;
+
+    @Value("${auth.bcrypt.threads:2}")
+    private int bcryptThreads;
+
+    @Value("${auth.bcrypt.queue-capacity:64}")
+    private int bcryptQueueCapacity;
+
+    @Value("${auth.bcrypt.timeout:2s}")
+    private Duration bcryptTimeout;
+
 
+    // BCrypt runs on its own bounded pool, see BoundedPasswordEncoder
     @Bean
     public PasswordEncoder passwordEncoder(){
-        return new BCryptPasswordEncoder();
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(bcryptStrength),
+                bcryptThreads, bcryptQueueCapacity, bcryptTimeout, meterRegistry);
     }
 
     @Bean
     public AuthTokenFilter authTokenFilter(){
-        return new AuthTokenFilter(jwtUtils, userDetailsService);
+        return new AuthTokenFilter(jwtUtils, userDetailsService, authStateCache, statelessPrincipal);
     }
 
 
@@ -67,7 +97,8 @@ public class ShopConfig {
         http.csrf(AbstractHttpConfigurer::disable)
                 .exceptionHandling(exception -> exception.authenticationEntryPoint(authEntryPoint))
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
-                .authorizeHttpRequests(auth -> auth.requestMatchers(SECURED_URLS.toArray(String[]::new)).authenticated()
+                .authorizeHttpRequests(auth -> auth.requestMatchers(ADMIN_URLS.toArray(String[]::new)).hasRole("ADMIN")
+                        .requestMatchers(SECURED_URLS.toArray(String[]::new)).authenticated()
                         .anyRequest().permitAll());
 
         http.authenticationProvider(daoAuthenticationProvider());
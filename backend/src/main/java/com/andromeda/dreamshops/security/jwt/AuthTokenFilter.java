@@ -1,7 +1,11 @@
 package com.andromeda.dreamshops.security.jwt;
 
+import com.andromeda.dreamshops.security.user.ShopUserDetails;
 import com.andromeda.dreamshops.security.user.ShopUserDetailsService;
+import com.andromeda.dreamshops.security.user.UserAuthState;
+import com.andromeda.dreamshops.security.user.UserAuthStateCache;
 
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -11,18 +15,33 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
 
+/**
+ * Authenticates requests by their bearer token.
+ * <p>
+ * With {@code auth.token.stateless-principal} (the default) the principal is built from the verified
+ * {@code id}, {@code sub} and {@code roles} claims, and the users table is only asked whether the user still
+ * exists and is enabled, through the short lived {@link UserAuthStateCache}. Only a token issued before the
+ * user's roles changed is resolved from the database, like every token is with the mode switched off.
+ */
 @RequiredArgsConstructor
 public class AuthTokenFilter extends OncePerRequestFilter {
 
     private final JwtUtils jwtUtils;
     private final ShopUserDetailsService userDetailsService;
+    private final UserAuthStateCache authStateCache;
+    private final boolean statelessPrincipal;
 
 
 
@@ -32,9 +51,13 @@ public class AuthTokenFilter extends OncePerRequestFilter {
                                     @NonNull FilterChain filterChain) throws ServletException, IOException {
         String jwt = parseJwt(request);
         try {
-            if(StringUtils.hasText(jwt) && jwtUtils.validateToken(jwt)){
-                String username = jwtUtils.getUserNameFromToken(jwt);
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+            if(StringUtils.hasText(jwt)){
+                // verified and read in one pass
+                Claims claims = jwtUtils.parseAndValidate(jwt);
+                UserDetails userDetails = statelessPrincipal ? principalFromClaims(claims) : null;
+                if (userDetails == null) {
+                    userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
+                }
                 Authentication authentication = new UsernamePasswordAuthenticationToken(
                         userDetails, null, userDetails.getAuthorities());
                 SecurityContextHolder.getContext().setAuthentication(authentication);
@@ -52,6 +75,32 @@ public class AuthTokenFilter extends OncePerRequestFilter {
 
     }
 
+    /**
+     * @return the principal of the claims, or null if they may be out of date and the user has to be loaded
+     * @throws JwtException if the user was deleted or disabled
+     */
+    private ShopUserDetails principalFromClaims(Claims claims) {
+        Number id = claims.get("id", Number.class);
+        List<?> roles = claims.get("roles", List.class);
+        Date issuedAt = claims.getIssuedAt();
+        if (id == null || roles == null || issuedAt == null) {
+            return null;
+        }
+        UserAuthState state = authStateCache.get(id.longValue())
+                .orElseThrow(() -> new JwtException("User no longer exists"));
+        if (!state.enabled()) {
+            throw new JwtException("User is disabled");
+        }
+        if (state.authChangedAt() != null
+                && issuedAt.toInstant().isBefore(state.authChangedAt().atZone(ZoneId.systemDefault()).toInstant())) {
+            return null;
+        }
+        List<GrantedAuthority> authorities = roles.stream()
+                .<GrantedAuthority>map(role -> new SimpleGrantedAuthority(role.toString()))
+                .toList();
+        return new ShopUserDetails(id.longValue(), claims.getSubject(), null, true, authorities);
+    }
+
     private String parseJwt(HttpServletRequest request){
         String headerAuth = request.getHeader("Authorization");
         if (StringUtils.hasText(headerAuth) && headerAuth.startsWith("Bearer ")) {
@@ -15,12 +15,20 @@ import java.util.*;
 
 @Component
 public class JwtUtils {
+    // built once: decoding the secret and setting up the HMAC key and parser is most of the cost of a check
+    private final Key key;
+    // immutable and thread safe
+    private final JwtParser parser;
+    private final int expirationTime;
 
-    @Value("${auth.token.jwtSecret}")
-    private String jwtSecret;
-
-    @Value("${auth.token.expirationInMils}")
-    private int expirationTime;
+    public JwtUtils(@Value("${auth.token.jwtSecret}") String jwtSecret,
+                    @Value("${auth.token.expirationInMils}") int expirationTime) {
+        this.key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build();
+        this.expirationTime = expirationTime;
+    }
 
     public String generateTokenForUser(Authentication authentication){
         ShopUserDetails userPrincipal = (ShopUserDetails) authentication.getPrincipal();
@@ -36,32 +44,30 @@ public class JwtUtils {
                 .claim("roles", roles)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date((new Date()).getTime() + expirationTime))
-                .signWith(key(), SignatureAlgorithm.HS256).compact();
+                .signWith(key, SignatureAlgorithm.HS256).compact();
     }
 
-    private Key key(){
-        return Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+    /**
+     * Verifies the signature and expiry of the token and returns its claims, parsing it only once.
+     * @throws JwtException if the token is invalid or expired
+     */
+    public Claims parseAndValidate(String token) {
+        try {
+            return parser.parseClaimsJws(token).getBody();
+        } catch (ExpiredJwtException | UnsupportedJwtException |
+                 MalformedJwtException | SignatureException |
+                 IllegalArgumentException e) {
+            throw new JwtException(e.getMessage());
+        }
     }
 
     public String getUserNameFromToken(String token){
-        return Jwts.parserBuilder()
-                .setSigningKey(key())
-                .build()
-                .parseClaimsJws(token)
+        return parser.parseClaimsJws(token)
                 .getBody().getSubject();
     }
 
     public boolean validateToken(String token) {
-        try {
-            Jwts.parserBuilder()
-                    .setSigningKey(key())
-                    .build()
-                    .parseClaimsJws(token);
-            return true;
-        } catch (ExpiredJwtException | UnsupportedJwtException |
-                 MalformedJwtException | SignatureException |
-                 IllegalArgumentException e) {
-            throw new JwtException(e.getMessage());
-        }
+        parseAndValidate(token);
+        return true;
     }
 }
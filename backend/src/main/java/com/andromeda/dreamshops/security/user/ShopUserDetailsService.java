@@ -2,25 +2,101 @@ package com.andromeda.dreamshops.security.user;
 
 import com.andromeda.dreamshops.model.User;
 import com.andromeda.dreamshops.repository.UserRepository;
-import lombok.*;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Objects;
 import java.util.Optional;
 
+/**
+ * Loads users by email for logins and for tokens that can't be trusted on their claims alone.
+ * <p>
+ * The loaded details are cached by email, bounded by {@code auth.user-details-cache.maximum-size}
+ * and {@code auth.user-details-cache.ttl}, so a burst of logins doesn't run the user and roles query every time.
+ * Code that changes what the details hold (roles, enabled, the user itself) calls {@link #evictAfterCommit(User)}.
+ * Other nodes don't get that eviction, so every hit is checked against the user's {@link UserAuthState}, which
+ * is cached for the much shorter {@code auth.state-cache.ttl}: details loaded before the roles or the enabled flag
+ * last changed are loaded again. Hits and misses are exposed as the {@code cache.gets} metric
+ * of the {@code userDetails} cache.
+ */
 @Service
-@RequiredArgsConstructor
 public class ShopUserDetailsService implements UserDetailsService {
     private final UserRepository userRepository;
+    private final UserAuthStateCache authStateCache;
+    private final Cache<String, LoadedUser> userDetails;
 
-
+    public ShopUserDetailsService(UserRepository userRepository,
+                                  UserAuthStateCache authStateCache,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${auth.user-details-cache.maximum-size:10000}") long maximumSize,
+                                  @Value("${auth.user-details-cache.ttl:5m}") Duration ttl) {
+        this.userRepository = userRepository;
+        this.authStateCache = authStateCache;
+        this.userDetails = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, userDetails, "userDetails");
+    }
 
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
+        LoadedUser loaded = userDetails.get(email, this::load);
+        if (!isCurrent(loaded)) {
+            loaded = load(email);
+            userDetails.put(email, loaded);
+        }
+        return loaded.details();
+    }
+
+    private LoadedUser load(String email) {
         User user = Optional.ofNullable(userRepository.findByEmail(email))
                 .orElseThrow(()-> new UsernameNotFoundException("User not found with email: " + email));
-        return ShopUserDetails.buildUserDetails(user);
+        return new LoadedUser(ShopUserDetails.buildUserDetails(user), user.getAuthChangedAt());
+    }
+
+    // a role or enabled change made on another node shows in the auth state within its ttl
+    private boolean isCurrent(LoadedUser loaded) {
+        return authStateCache.get(loaded.details().getId())
+                .filter(state -> state.enabled() == loaded.details().isEnabled())
+                .filter(state -> Objects.equals(state.authChangedAt(), loaded.authChangedAt()))
+                .isPresent();
+    }
+
+    private record LoadedUser(ShopUserDetails details, LocalDateTime authChangedAt) {
+    }
+
+    /**
+     * Drops everything cached about the user once the current transaction commits
+     * (evicting before the commit would let a concurrent request cache the old state again).
+     */
+    public void evictAfterCommit(User user) {
+        String email = user.getEmail();
+        authStateCache.evictAfterCommit(user.getId());
+        if (email == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            userDetails.invalidate(email);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                userDetails.invalidate(email);
+            }
+        });
     }
 }
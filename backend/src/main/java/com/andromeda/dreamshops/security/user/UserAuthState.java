@@ -0,0 +1,11 @@
+package com.andromeda.dreamshops.security.user;
+
+import java.time.LocalDateTime;
+
+/**
+ * What a token holder's access depends on besides the token itself, see {@link UserAuthStateCache}.
+ * @param authChangedAt when the roles or the existence of the user last changed; tokens issued before can't be trusted
+ *                      for their roles
+ */
+public record UserAuthState(boolean enabled, LocalDateTime authChangedAt) {
+}
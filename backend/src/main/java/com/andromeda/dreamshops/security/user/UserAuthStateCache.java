@@ -0,0 +1,59 @@
+package com.andromeda.dreamshops.security.user;
+
+import com.andromeda.dreamshops.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Short lived cache of {@link UserAuthState} by user id, for the principals built from token claims
+ * (see {@code AuthTokenFilter}). It is loaded with a single column query, without the roles join.
+ * <p>
+ * Entries live for {@code auth.state-cache.ttl}, which bounds how long another node may still accept the token
+ * of a disabled or deleted user. Changes made on this node evict the entry once they commit.
+ */
+@Component
+public class UserAuthStateCache {
+    private final UserRepository userRepository;
+    private final Cache<Long, Optional<UserAuthState>> states;
+
+    public UserAuthStateCache(UserRepository userRepository,
+                              @Value("${auth.state-cache.maximum-size:10000}") long maximumSize,
+                              @Value("${auth.state-cache.ttl:30s}") Duration ttl) {
+        this.userRepository = userRepository;
+        this.states = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * @return the state of the user, empty if the user does not exist
+     */
+    public Optional<UserAuthState> get(Long userId) {
+        return states.get(userId, userRepository::findAuthStateById);
+    }
+
+    // evicting before the commit would let a concurrent request cache the old state again
+    public void evictAfterCommit(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            states.invalidate(userId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                states.invalidate(userId);
+            }
+        });
+    }
+}
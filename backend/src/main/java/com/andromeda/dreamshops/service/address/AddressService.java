@@ -5,6 +5,7 @@ import com.andromeda.dreamshops.enums.AddressType;
 import com.andromeda.dreamshops.exceptions.GeneralException;
 import com.andromeda.dreamshops.exceptions.ResourceNotFoundException;
 import com.andromeda.dreamshops.exceptions.ResourceProcessingException;
+import com.andromeda.dreamshops.mapper.UserMapper;
 import com.andromeda.dreamshops.model.Address;
 import com.andromeda.dreamshops.model.UserAccount;
 import com.andromeda.dreamshops.repository.AddressRepository;
@@ -13,7 +14,6 @@ import com.andromeda.dreamshops.request.AddAddressRequest;
 import com.andromeda.dreamshops.request.UpdateAddressRequest;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Service;
 
 import java.util.Arrays;
@@ -24,7 +24,7 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class AddressService implements IAddressService{
     private final AddressRepository addressRepository;
-    private final ModelMapper modelMapper;
+    private final UserMapper userMapper;
     private final UserAccountRepository userAccountRepository;
 
     @Override
@@ -209,14 +209,12 @@ public class AddressService implements IAddressService{
 
     @Override
     public AddressDto convertToDto(Address address) {
-        return modelMapper.map(address, AddressDto.class);
+        return userMapper.toDto(address);
     }
 
     @Override
     public List<AddressDto> convertToDtoList(List<Address> addresses) {
-        return addresses.stream()
-                .map(this::convertToDto)
-                .toList();
+        return userMapper.toAddressDtoList(addresses);
     }
 
     private void validateAddressOwnership(Address address, UserAccount userAccount) {
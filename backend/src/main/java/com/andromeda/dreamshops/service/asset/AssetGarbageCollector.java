@@ -0,0 +1,155 @@
+package com.andromeda.dreamshops.service.asset;
+
+import com.andromeda.dreamshops.enums.AssetType;
+import com.andromeda.dreamshops.enums.ImageVariant;
+import com.andromeda.dreamshops.model.AssetDeletion;
+import com.andromeda.dreamshops.repository.AssetDeletionRepository;
+import com.andromeda.dreamshops.service.cloudprovider.ICloudProviderService;
+import com.andromeda.dreamshops.service.outbox.OutboxQueue;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deletes the stored assets of deleted shops, products and images in the background.
+ * <p>
+ * A delete only records what has to go ({@link #enqueueFolder}, {@link #enqueueImage}) in its own transaction,
+ * so a slow or failing storage neither holds the transaction open nor rolls the delete back.
+ * Every {@code assets.gc.interval-ms} up to {@code assets.gc.batch-size} due entries are claimed and deleted:
+ * the images with batched calls, the folders one call each, and no more than
+ * {@code assets.gc.max-calls-per-second} calls to the storage. A failed entry is tried again after an exponential
+ * backoff, and given up after {@code assets.gc.max-attempts}. Entries are claimed through {@link OutboxQueue},
+ * so several nodes can run the collector; storage deletes are idempotent, so an entry that is processed twice
+ * after a crash does no harm.
+ * <p>
+ * Metrics: {@code assets.gc.deleted}, {@code assets.gc.failures} and {@code assets.gc.abandoned}, tagged by type,
+ * and the {@code assets.gc.batch} timer.
+ */
+@Slf4j
+@Component
+public class AssetGarbageCollector {
+    private final AssetDeletionRepository deletionRepository;
+    private final ICloudProviderService cloudProviderService;
+    private final MeterRegistry meterRegistry;
+    private final OutboxQueue<AssetDeletion> queue;
+    private final int batchSize;
+    private final long minCallIntervalNanos;
+
+    private long lastCallNanos;
+
+    public AssetGarbageCollector(AssetDeletionRepository deletionRepository,
+                                 ICloudProviderService cloudProviderService,
+                                 MeterRegistry meterRegistry,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${assets.gc.batch-size:50}") int batchSize,
+                                 @Value("${assets.gc.max-calls-per-second:5}") double maxCallsPerSecond,
+                                 @Value("${assets.gc.max-attempts:8}") int maxAttempts,
+                                 @Value("${assets.gc.initial-backoff:30s}") Duration initialBackoff,
+                                 @Value("${assets.gc.max-backoff:1h}") Duration maxBackoff,
+                                 @Value("${assets.gc.claim-timeout:10m}") Duration claimTimeout) {
+        this.deletionRepository = deletionRepository;
+        this.cloudProviderService = cloudProviderService;
+        this.meterRegistry = meterRegistry;
+        this.queue = new OutboxQueue<>(deletionRepository, new TransactionTemplate(transactionManager),
+                maxAttempts, initialBackoff, maxBackoff, claimTimeout);
+        this.batchSize = batchSize;
+        this.minCallIntervalNanos = (long) (1_000_000_000L / maxCallsPerSecond);
+    }
+
+    // joins the transaction of the caller, so the entry is only there if the delete commits
+    public void enqueueFolder(String folder) {
+        deletionRepository.save(new AssetDeletion(AssetType.FOLDER, folder));
+    }
+
+    public void enqueueImage(String publicId) {
+        if (publicId != null && !publicId.isEmpty()) {
+            deletionRepository.save(new AssetDeletion(AssetType.IMAGE, publicId));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${assets.gc.interval-ms:5000}")
+    public void collect() {
+        List<AssetDeletion> batch = queue.claimDue(batchSize);
+        if (batch.isEmpty()) {
+            return;
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        List<AssetDeletion> images = new ArrayList<>();
+        List<Long> deleted = new ArrayList<>();
+        for (AssetDeletion entry : batch) {
+            if (entry.getType() == AssetType.IMAGE) {
+                images.add(entry);
+                continue;
+            }
+            try {
+                pace();
+                cloudProviderService.deleteFolder(entry.getAssetKey());
+                deleted.add(entry.getId());
+                meterRegistry.counter("assets.gc.deleted", "type", entry.getType().name()).increment();
+            } catch (Exception e) {
+                recordFailure(entry, e);
+            }
+        }
+        if (!images.isEmpty()) {
+            try {
+                pace();
+                cloudProviderService.deleteImagesByPublicIds(publicIdsWithVariants(images));
+                images.forEach(entry -> deleted.add(entry.getId()));
+                meterRegistry.counter("assets.gc.deleted", "type", AssetType.IMAGE.name()).increment(images.size());
+            } catch (Exception e) {
+                images.forEach(entry -> recordFailure(entry, e));
+            }
+        }
+        if (!deleted.isEmpty()) {
+            queue.remove(deleted);
+        }
+        sample.stop(meterRegistry.timer("assets.gc.batch"));
+    }
+
+    // an image is stored with its variants, see ImageService
+    private List<String> publicIdsWithVariants(List<AssetDeletion> images) {
+        List<String> publicIds = new ArrayList<>();
+        for (AssetDeletion image : images) {
+            publicIds.add(image.getAssetKey());
+            for (ImageVariant variant : ImageVariant.values()) {
+                publicIds.add(image.getAssetKey() + "-" + variant.getSuffix());
+            }
+        }
+        return publicIds;
+    }
+
+    private void recordFailure(AssetDeletion entry, Exception e) {
+        int attempts = entry.getAttempts() + 1;
+        LocalDateTime nextAttemptAt = queue.recordFailure(entry, e);
+        if (nextAttemptAt != null) {
+            meterRegistry.counter("assets.gc.failures", "type", entry.getType().name()).increment();
+            log.warn("Could not delete {} {} (attempt {}), retrying at {}", entry.getType(), entry.getAssetKey(), attempts, nextAttemptAt, e);
+        } else {
+            meterRegistry.counter("assets.gc.abandoned", "type", entry.getType().name()).increment();
+            log.error("Giving up deleting {} {} after {} attempts", entry.getType(), entry.getAssetKey(), attempts, e);
+        }
+    }
+
+    // keeps the calls to the storage under assets.gc.max-calls-per-second
+    private void pace() {
+        long wait = lastCallNanos + minCallIntervalNanos - System.nanoTime();
+        if (lastCallNanos != 0 && wait > 0) {
+            try {
+                Thread.sleep(Duration.ofNanos(wait));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        lastCallNanos = System.nanoTime();
+    }
+}
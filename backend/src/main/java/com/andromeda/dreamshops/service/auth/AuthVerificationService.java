@@ -5,8 +5,9 @@ import com.andromeda.dreamshops.exceptions.ResourceNotFoundException;
 import com.andromeda.dreamshops.model.User;
 import com.andromeda.dreamshops.repository.UserRepository;
 import com.andromeda.dreamshops.request.VerifyUserRequest;
-import com.andromeda.dreamshops.service.email.EmailService;
-import jakarta.mail.MessagingException;
+import com.andromeda.dreamshops.security.user.ShopUserDetailsService;
+import com.andromeda.dreamshops.service.email.EmailOutbox;
+import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -19,8 +20,11 @@ import java.util.Random;
 @RequiredArgsConstructor
 public class AuthVerificationService {
     private final UserRepository userRepository;
-    private final EmailService emailService;
+    private final EmailOutbox emailOutbox;
+    private final ShopUserDetailsService userDetailsService;
 
+    // the email is sent by the outbox once the user is saved, see EmailOutbox
+    @Transactional
     public void sendVerificationCode(User user) {
         String verificationCode = generateVerificationCode();
         user.setVerificationCode(verificationCode);
@@ -58,12 +62,7 @@ public class AuthVerificationService {
                 "</body>" +
                 "</html>";
 
-        try{
-            emailService.sendVerificationEmail(user.getEmail(), subject, body);
-        } catch (MessagingException e) {
-            throw new GeneralException("Failed to send verification email. Please try again later.");
-        }
-
+        emailOutbox.enqueue(user.getEmail(), subject, body);
     }
 
     public void verifyUser(VerifyUserRequest request) {
@@ -81,11 +80,13 @@ public class AuthVerificationService {
             user.setVerificationCode(null);
             user.setVerificationCodeExpiresAt(null);
             userRepository.save(user);
+            userDetailsService.evictAfterCommit(user);
         } else {
             throw new GeneralException("Invalid verification code.");
         }
     }
 
+    @Transactional
     public void resendVerificationCode(String email) {
         User user = Optional.ofNullable(userRepository.findByEmail(email))
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
@@ -0,0 +1,171 @@
+package com.andromeda.dreamshops.service.cart;
+
+import com.andromeda.dreamshops.dto.CartDto;
+import com.andromeda.dreamshops.dto.CartItemDto;
+import com.andromeda.dreamshops.dto.ProductDto;
+import com.andromeda.dreamshops.exceptions.GeneralException;
+import com.andromeda.dreamshops.exceptions.ResourceNotFoundException;
+import com.andromeda.dreamshops.model.MinorUnits;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * The in-memory state of one cart, see {@link CartCache}.
+ * Lines are keyed by product id; the ids of the products changed since the last flush are remembered
+ * so a flush only writes those lines.
+ * Amounts are kept in minor units and the total is moved by the difference of each change;
+ * they only become BigDecimal again in {@link #toDto()}.
+ */
+final class CachedCart {
+    record CartLine(Long itemId, ProductDto product, int quantity, long unitPrice) {
+        long totalPrice() {
+            return MinorUnits.lineTotal(unitPrice, quantity);
+        }
+    }
+
+    final Long cartId;
+    final Long userId;
+    // held while the changes of this cart are written, so two flushes never write the same cart
+    final ReentrantLock flushLock = new ReentrantLock();
+
+    private final Map<Long, CartLine> lines = new LinkedHashMap<>();
+    private final Set<Long> changedProductIds = new HashSet<>();
+    private long totalAmount;
+
+    private CachedCart(Long cartId, Long userId) {
+        this.cartId = cartId;
+        this.userId = userId;
+    }
+
+    static CachedCart of(CartDto cart, Long userId) {
+        CachedCart cachedCart = new CachedCart(cart.getCartId(), userId);
+        for (CartItemDto item : cart.getCartItems()) {
+            CartLine line = new CartLine(item.getItemId(), item.getProduct(), item.getQuantity(),
+                    MinorUnits.of(item.getUnitPrice()));
+            cachedCart.lines.put(item.getProduct().getId(), line);
+            cachedCart.totalAmount = Math.addExact(cachedCart.totalAmount, line.totalPrice());
+        }
+        return cachedCart;
+    }
+
+    synchronized void addItem(ProductDto product, int quantity) {
+        lines.values().stream()
+                .findFirst()
+                .ifPresent(line -> {
+                    if (!line.product().getShopId().equals(product.getShopId())) {
+                        throw new GeneralException("Cannot add products from different shops to the same cart.");
+                    }
+                });
+        CartLine existing = lines.get(product.getId());
+        if (existing == null) {
+            put(new CartLine(null, product, quantity, MinorUnits.of(product.getPrice())));
+        } else {
+            put(new CartLine(existing.itemId(), existing.product(), existing.quantity() + quantity, existing.unitPrice()));
+        }
+    }
+
+    synchronized void removeItem(Long productId) {
+        CartLine removed = lines.remove(productId);
+        if (removed == null) {
+            throw new ResourceNotFoundException("CartItem not found for product ID: " + productId);
+        }
+        totalAmount = Math.subtractExact(totalAmount, removed.totalPrice());
+        changedProductIds.add(productId);
+    }
+
+    // like before, an item that is not in the cart is left alone
+    synchronized boolean updateItem(ProductDto product, int quantity) {
+        CartLine existing = lines.get(product.getId());
+        if (existing == null) {
+            return false;
+        }
+        put(new CartLine(existing.itemId(), product, quantity, MinorUnits.of(product.getPrice())));
+        return true;
+    }
+
+    private void put(CartLine line) {
+        CartLine previous = lines.put(line.product().getId(), line);
+        long previousTotal = previous == null ? 0 : previous.totalPrice();
+        totalAmount = Math.addExact(totalAmount, line.totalPrice() - previousTotal);
+        changedProductIds.add(line.product().getId());
+    }
+
+    /**
+     * Applies all changes or none: if one of them throws, the cart is put back the way it was.
+     */
+    synchronized void applyAll(Consumer<CachedCart> changes) {
+        Map<Long, CartLine> linesBefore = new LinkedHashMap<>(lines);
+        Set<Long> changedBefore = new HashSet<>(changedProductIds);
+        long totalBefore = totalAmount;
+        try {
+            changes.accept(this);
+        } catch (RuntimeException e) {
+            lines.clear();
+            lines.putAll(linesBefore);
+            changedProductIds.clear();
+            changedProductIds.addAll(changedBefore);
+            totalAmount = totalBefore;
+            throw e;
+        }
+    }
+
+    synchronized BigDecimal getTotalAmount() {
+        return MinorUnits.toDecimal(totalAmount);
+    }
+
+    synchronized CartDto toDto() {
+        Set<CartItemDto> items = new LinkedHashSet<>();
+        for (CartLine line : lines.values()) {
+            CartItemDto item = new CartItemDto();
+            item.setItemId(line.itemId());
+            item.setQuantity(line.quantity());
+            item.setUnitPrice(MinorUnits.toDecimal(line.unitPrice()));
+            item.setProduct(line.product());
+            items.add(item);
+        }
+        CartDto cart = new CartDto();
+        cart.setCartId(cartId);
+        cart.setCartItems(items);
+        cart.setTotalAmount(MinorUnits.toDecimal(totalAmount));
+        return cart;
+    }
+
+    synchronized boolean hasChanges() {
+        return !changedProductIds.isEmpty();
+    }
+
+    /**
+     * @return the current line of every product changed since the last flush, null for removed ones
+     */
+    synchronized Map<Long, CartLine> drainChanges() {
+        Map<Long, CartLine> changes = new HashMap<>();
+        for (Long productId : changedProductIds) {
+            changes.put(productId, lines.get(productId));
+        }
+        changedProductIds.clear();
+        return changes;
+    }
+
+    // after a failed flush: the lines still hold the latest state, they only have to be written again
+    synchronized void restoreChanges(Collection<Long> productIds) {
+        changedProductIds.addAll(productIds);
+    }
+
+    synchronized void assignItemIds(Map<Long, Long> itemIdsByProductId) {
+        itemIdsByProductId.forEach((productId, itemId) -> {
+            CartLine line = lines.get(productId);
+            if (line != null && line.itemId() == null) {
+                lines.put(productId, new CartLine(itemId, line.product(), line.quantity(), line.unitPrice()));
+            }
+        });
+    }
+}
@@ -0,0 +1,311 @@
+package com.andromeda.dreamshops.service.cart;
+
+import com.andromeda.dreamshops.dto.ProductDto;
+import com.andromeda.dreamshops.exceptions.ResourceNotFoundException;
+import com.andromeda.dreamshops.mapper.CartMapper;
+import com.andromeda.dreamshops.mapper.ProductMapper;
+import com.andromeda.dreamshops.model.Cart;
+import com.andromeda.dreamshops.model.CartItem;
+import com.andromeda.dreamshops.model.MinorUnits;
+import com.andromeda.dreamshops.repository.CartRepository;
+import com.andromeda.dreamshops.repository.ProductRepository;
+import com.andromeda.dreamshops.service.cart.CachedCart.CartLine;
+import com.andromeda.dreamshops.service.retry.OptimisticRetryExecutor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the carts of active users in memory, bounded by {@code cart.cache.maximum-size}
+ * and {@code cart.cache.expire-after-access}.
+ * <p>
+ * Reads are served from memory and item changes are applied to the cached cart only.
+ * Changed carts are written to the database behind the request, every {@code cart.cache.flush-interval-ms},
+ * and only the lines changed since the last flush are written, so many changes of one cart in a short time
+ * cost one write. {@link #flushUser(Long)} writes a cart synchronously, which checkout does before reading the cart.
+ * <p>
+ * A cart that is evicted with unwritten changes is kept aside until a flush has written it, and comes back from
+ * there if it is needed again, so changes the client was told about are not lost when the database is down.
+ * The eviction itself does no I/O; only flushes write to the database.
+ * <p>
+ * The cache is local to this node, so all requests for one cart are expected to reach the same node.
+ */
+@Slf4j
+@Component
+public class CartCache {
+    private final CartRepository cartRepository;
+    private final ProductRepository productRepository;
+    private final CartMapper cartMapper;
+    private final ProductMapper productMapper;
+    private final OptimisticRetryExecutor retryExecutor;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final Cache<Long, CachedCart> carts;
+    private final Set<Long> changedCartIds = ConcurrentHashMap.newKeySet();
+    // evicted carts that still have changes to write, or were being written when they were evicted
+    private final ConcurrentMap<Long, CachedCart> pendingWrites = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Long> cartIdsByUserId = new ConcurrentHashMap<>();
+
+    public CartCache(CartRepository cartRepository,
+                     ProductRepository productRepository,
+                     CartMapper cartMapper,
+                     ProductMapper productMapper,
+                     OptimisticRetryExecutor retryExecutor,
+                     PlatformTransactionManager transactionManager,
+                     @Value("${cart.cache.maximum-size:10000}") long maximumSize,
+                     @Value("${cart.cache.expire-after-access:30m}") Duration expireAfterAccess) {
+        this.cartRepository = cartRepository;
+        this.productRepository = productRepository;
+        this.cartMapper = cartMapper;
+        this.productMapper = productMapper;
+        this.retryExecutor = retryExecutor;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.carts = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(expireAfterAccess)
+                // runs while the entry is still locked, so nobody reloads the cart from the database in between
+                .<Long, CachedCart>evictionListener((cartId, cart, cause) -> {
+                    if (cart == null) {
+                        return;
+                    }
+                    if (cart.hasChanges() || cart.flushLock.isLocked()) {
+                        pendingWrites.put(cartId, cart);
+                        changedCartIds.add(cartId);
+                    } else {
+                        cartIdsByUserId.remove(cart.userId, cart.cartId);
+                    }
+                })
+                .build();
+    }
+
+    CachedCart get(Long cartId) {
+        return carts.get(cartId, this::load);
+    }
+
+    /**
+     * Applies a change to the cached cart, loading it first if needed.
+     * Runs under the lock of the cache entry, so the cart can't be evicted halfway.
+     */
+    void update(Long cartId, Consumer<CachedCart> change) {
+        carts.asMap().compute(cartId, (id, cart) -> {
+            CachedCart cachedCart = cart != null ? cart : load(id);
+            change.accept(cachedCart);
+            if (cachedCart.hasChanges()) {
+                changedCartIds.add(id);
+            }
+            return cachedCart;
+        });
+    }
+
+    ProductDto loadProduct(Long productId) {
+        return readOnlyTransaction.execute(status -> productRepository.findById(productId)
+                .map(productMapper::toDto)
+                .orElseThrow(() -> new ResourceNotFoundException("Product not found!")));
+    }
+
+    /**
+     * Loads several products with one query.
+     * @throws ResourceNotFoundException if any of them does not exist
+     */
+    Map<Long, ProductDto> loadProducts(Collection<Long> productIds) {
+        Map<Long, ProductDto> products = readOnlyTransaction.execute(status -> {
+            Map<Long, ProductDto> found = new HashMap<>();
+            productRepository.findAllById(productIds).forEach(product -> found.put(product.getId(), productMapper.toDto(product)));
+            return found;
+        });
+        for (Long productId : productIds) {
+            if (!products.containsKey(productId)) {
+                throw new ResourceNotFoundException("Product not found with id: " + productId);
+            }
+        }
+        return products;
+    }
+
+    public Long cartIdOfUser(Long userId) {
+        return cartIdsByUserId.get(userId);
+    }
+
+    /**
+     * Drops the cart without writing its pending changes, for carts that are deleted.
+     * Inside a transaction this happens once it commits: before that the cart is still visible,
+     * and a request loading it in between would put it back into the cache.
+     */
+    public void discard(Long cartId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    remove(cartId);
+                }
+            });
+            return;
+        }
+        remove(cartId);
+    }
+
+    private void remove(Long cartId) {
+        CachedCart cart = carts.asMap().remove(cartId);
+        CachedCart pending = pendingWrites.remove(cartId);
+        if (cart == null) {
+            cart = pending;
+        }
+        changedCartIds.remove(cartId);
+        if (cart != null) {
+            cartIdsByUserId.remove(cart.userId, cartId);
+        }
+    }
+
+    private CachedCart load(Long cartId) {
+        // an evicted cart that was not written yet comes back with its changes
+        CachedCart pending = pendingWrites.remove(cartId);
+        if (pending != null) {
+            return pending;
+        }
+        CachedCart cart = readOnlyTransaction.execute(status -> cartRepository.findById(cartId)
+                .map(entity -> CachedCart.of(cartMapper.toDto(entity), entity.getUser().getId()))
+                .orElseThrow(() -> new ResourceNotFoundException("Cart not found with id: " + cartId)));
+        cartIdsByUserId.put(cart.userId, cartId);
+        return cart;
+    }
+
+    /**
+     * Writes the pending changes of the user's cart, if it is cached, before this returns.
+     */
+    public void flushUser(Long userId) {
+        Long cartId = cartIdsByUserId.get(userId);
+        if (cartId != null) {
+            flush(cartId);
+        }
+    }
+
+    public void flush(Long cartId) {
+        changedCartIds.remove(cartId);
+        CachedCart cart = carts.getIfPresent(cartId);
+        boolean evicted = cart == null;
+        if (evicted) {
+            cart = pendingWrites.get(cartId);
+            if (cart == null) {
+                return;
+            }
+        }
+        // a failed write throws, the cart then stays cached or pending and is marked as changed again
+        boolean exists = write(cart);
+        if (evicted) {
+            pendingWrites.remove(cartId, cart);
+            if (!carts.asMap().containsKey(cartId)) {
+                cartIdsByUserId.remove(cart.userId, cartId);
+            }
+        } else if (!exists) {
+            // the cart was deleted, so the user gets a new one instead of adding to the deleted id
+            carts.asMap().remove(cartId, cart);
+            cartIdsByUserId.remove(cart.userId, cartId);
+        }
+    }
+
+    // write-behind: writes every cart changed since the last run
+    @Scheduled(fixedDelayString = "${cart.cache.flush-interval-ms:500}")
+    public void flushChanged() {
+        for (Long cartId : changedCartIds) {
+            try {
+                flush(cartId);
+            } catch (RuntimeException e) {
+                log.warn("Could not write the changes of cart {}, retrying with the next flush", cartId, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushAll() {
+        List<CachedCart> all = new ArrayList<>(carts.asMap().values());
+        all.addAll(pendingWrites.values());
+        for (CachedCart cart : all) {
+            try {
+                write(cart);
+            } catch (RuntimeException e) {
+                log.error("Lost the unwritten changes of cart {} at shutdown", cart.cartId, e);
+            }
+        }
+    }
+
+    // false if the cart no longer exists in the database
+    private boolean write(CachedCart cart) {
+        cart.flushLock.lock();
+        try {
+            Map<Long, CartLine> changes = cart.drainChanges();
+            if (changes.isEmpty()) {
+                return true;
+            }
+            try {
+                Map<Long, Long> itemIds = retryExecutor.execute("cart.flush", () -> writeChanges(cart.cartId, changes));
+                if (itemIds == null) {
+                    log.warn("Cart {} was deleted, dropping its {} unwritten changes", cart.cartId, changes.size());
+                    return false;
+                }
+                cart.assignItemIds(itemIds);
+                return true;
+            } catch (RuntimeException e) {
+                cart.restoreChanges(changes.keySet());
+                changedCartIds.add(cart.cartId);
+                throw e;
+            }
+        } finally {
+            cart.flushLock.unlock();
+        }
+    }
+
+    /**
+     * @return the item id of every line, by product id, or null if the cart does not exist
+     */
+    private Map<Long, Long> writeChanges(Long cartId, Map<Long, CartLine> changes) {
+        Cart cart = cartRepository.findById(cartId).orElse(null);
+        if (cart == null) {
+            return null;
+        }
+        changes.forEach((productId, line) -> {
+            CartItem item = cart.findItem(productId).orElse(null);
+            if (line == null) {
+                if (item != null) {
+                    cart.removeItem(item);
+                }
+                return;
+            }
+            BigDecimal unitPrice = MinorUnits.toDecimal(line.unitPrice());
+            if (item == null) {
+                item = new CartItem();
+                item.setProduct(productRepository.getReferenceById(productId));
+                item.setQuantity(line.quantity());
+                item.setUnitPrice(unitPrice);
+                item.setTotalPrice();
+                cart.addItem(item);
+            } else {
+                cart.updateItem(item, line.quantity(), unitPrice);
+            }
+        });
+        Cart saved = cartRepository.saveAndFlush(cart);
+
+        Map<Long, Long> itemIds = new HashMap<>();
+        saved.getItems().forEach(item -> itemIds.put(item.getProductId(), item.getId()));
+        return itemIds;
+    }
+}
@@ -1,103 +1,111 @@
 package com.andromeda.dreamshops.service.cart;
 
+import com.andromeda.dreamshops.dto.CartDto;
+import com.andromeda.dreamshops.dto.ProductDto;
+import com.andromeda.dreamshops.enums.CartOperationType;
 import com.andromeda.dreamshops.exceptions.GeneralException;
 import com.andromeda.dreamshops.exceptions.ResourceNotFoundException;
 import com.andromeda.dreamshops.model.*;
-import com.andromeda.dreamshops.repository.*;
-import com.andromeda.dreamshops.service.product.IProductService;
+import com.andromeda.dreamshops.request.CartLineOperation;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+// item changes are applied to the cached cart and written to the database behind the request, see CartCache
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class CartItemService implements ICartItemService{
-    private final CartItemRepository cartItemRepository;
-    private final CartRepository cartRepository;
-    private final IProductService productService;
     private final ICartService cartService;
+    private final CartCache cartCache;
 
 
     @Override
     public void addItemToCart(Long cartId, Long productId, int quantity) {
-        //1. get the cart
-        //2. get the product
+        //1. get the product
+        //2. get the cart
         //3. check if the product is already in the cart
         //4. if it is, update the quantity with the requested quantity
-        //5. if no, then initiate a new CartItem entry
-
-        Cart cart = cartService.getCart(cartId);
-        Product product = productService.getProductById(productId);
-
-        cart.getItems().stream()
-                .findFirst()
-                .ifPresent(item -> {
-                    if (!item.getProduct().getShop().getId().equals(product.getShop().getId())) {
-                        throw new GeneralException("Cannot add products from different shops to the same cart.");
-                    }
-                });
-
-        CartItem cartItem = cart.getItems()
-                .stream()
-                .filter(item -> item.getProduct().getId().equals(productId))
-                .findFirst()
-                .orElse(new CartItem());
-
-        if(cartItem.getId()== null){
-            cartItem.setCart(cart);
-            cartItem.setProduct(product);
-            cartItem.setQuantity(quantity);
-            cartItem.setUnitPrice(product.getPrice());
-        }
-        else{
-            cartItem.setQuantity(cartItem.getQuantity() + quantity);
-        }
-
-        cartItem.setTotalPrice();
-        cart.addItem(cartItem);
-        cartItemRepository.save(cartItem);
-        cartRepository.save(cart);
+        //5. if no, then initiate a new cart line
 
+        ProductDto product = cartCache.loadProduct(productId);
+        cartCache.update(cartId, cart -> cart.addItem(product, quantity));
     }
 
     @Override
     public void removeItemFromCart(Long cartId, Long productId) {
-        Cart cart = cartService.getCart(cartId);
-        CartItem itemToRemove = getCartItemById(cartId, productId);
-
-        cart.removeItem(itemToRemove);
-        cartRepository.save(cart);
+        cartCache.update(cartId, cart -> cart.removeItem(productId));
     }
 
     @Override
     public void updateItemQuantity(Long cartId, Long productId, int quantity) {
-        Cart cart = cartService.getCart(cartId);
-        cart.getItems()
-                .stream()
-                .filter(cartItem -> cartItem.getProduct().getId().equals(productId))
-                .findFirst()
-                .ifPresent(cartItem -> {
-                    cartItem.setQuantity(quantity);
-                    cartItem.setUnitPrice(cartItem.getProduct().getPrice());
-                    cartItem.setTotalPrice();
-                });
-        BigDecimal totalAmount = cart.getItems()
-                .stream()
-                .map(CartItem::getTotalPrice)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        cart.setTotalAmount(totalAmount);
-        cartRepository.save(cart);
+        // the unit price is refreshed from the product, as before
+        ProductDto product = cartCache.loadProduct(productId);
+        cartCache.update(cartId, cart -> cart.updateItem(product, quantity));
+    }
+
+    /**
+     * Applies a list of line operations to the cart, in order, as one change:
+     * the products are loaded with one query, the cart is loaded once, and if any operation fails
+     * none of them is applied. The changed lines are then written to the database in one transaction.
+     *
+     * @param cartId id of the cart
+     * @param operations the ADD, UPDATE and REMOVE operations to apply
+     * @return the cart after all operations
+     * @throws ResourceNotFoundException if a product does not exist, or a removed product is not in the cart
+     * @throws GeneralException if an operation is incomplete or adds products of another shop
+     */
+    @Override
+    public CartDto applyOperations(Long cartId, List<CartLineOperation> operations) {
+        if (operations == null || operations.isEmpty()) {
+            return cartService.getCartDto(cartId);
+        }
+        Set<Long> productIds = new LinkedHashSet<>();
+        for (CartLineOperation operation : operations) {
+            validate(operation);
+            if (operation.getType() != CartOperationType.REMOVE) {
+                productIds.add(operation.getProductId());
+            }
+        }
+        Map<Long, ProductDto> products = cartCache.loadProducts(productIds);
+
+        cartCache.update(cartId, cart -> cart.applyAll(changes -> {
+            for (CartLineOperation operation : operations) {
+                switch (operation.getType()) {
+                    case ADD -> changes.addItem(products.get(operation.getProductId()), operation.getQuantity());
+                    case UPDATE -> changes.updateItem(products.get(operation.getProductId()), operation.getQuantity());
+                    case REMOVE -> changes.removeItem(operation.getProductId());
+                }
+            }
+        }));
+        try {
+            cartCache.flush(cartId);
+        } catch (RuntimeException e) {
+            // the changes are applied to the cart and stay queued for the next write-behind flush
+            log.warn("Could not write the bulk changes of cart {} right away", cartId, e);
+        }
+        return cartService.getCartDto(cartId);
+    }
 
+    private void validate(CartLineOperation operation) {
+        if (operation.getType() == null || operation.getProductId() == null) {
+            throw new GeneralException("Every cart operation needs a type and a product id.");
+        }
+        if (operation.getType() != CartOperationType.REMOVE
+                && (operation.getQuantity() == null || operation.getQuantity() <= 0)) {
+            throw new GeneralException("Invalid quantity " + operation.getQuantity() + " for product with id: " + operation.getProductId());
+        }
     }
 
     @Override
     public CartItem getCartItemById(Long cartId, Long productId) {
         Cart cart = cartService.getCart(cartId);
-        return cart.getItems()
-                .stream()
-                .filter(cartItem -> cartItem.getProduct().getId().equals(productId))
-                .findFirst()
+        return cart.findItem(productId)
                 .orElseThrow(() -> new ResourceNotFoundException("CartItem not found for product ID: " + productId));
 
     }
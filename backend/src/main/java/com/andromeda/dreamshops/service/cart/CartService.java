@@ -2,13 +2,13 @@ package com.andromeda.dreamshops.service.cart;
 
 import com.andromeda.dreamshops.dto.CartDto;
 import com.andromeda.dreamshops.exceptions.ResourceNotFoundException;
+import com.andromeda.dreamshops.mapper.CartMapper;
 import com.andromeda.dreamshops.model.Cart;
 import com.andromeda.dreamshops.model.User;
 import com.andromeda.dreamshops.repository.CartItemRepository;
 import com.andromeda.dreamshops.repository.CartRepository;
 import com.andromeda.dreamshops.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -22,38 +22,67 @@ public class CartService implements ICartService{
     private final CartItemRepository cartItemRepository;
     private final UserRepository userRepository;
     //private final AtomicLong cartIdGenerator = new AtomicLong(1);
-    private final ModelMapper modelMapper;
+    private final CartMapper cartMapper;
+    private final CartCache cartCache;
 
+    /**
+     * @param id of the cart
+     * @return the cart as stored in the database, after its pending cached changes have been written
+     */
     @Override
     public Cart getCart(Long id) {
-        Cart cart = cartRepository.findById(id)
+        cartCache.flush(id);
+        return cartRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Cart not found with id: " + id));
-        BigDecimal totalAmount = cart.getTotalAmount();
-        cart.setTotalAmount(totalAmount);
-        return cartRepository.save(cart);
     }
 
+    /**
+     * @param id of the cart
+     * @return the cart, served from the cart cache
+     */
+    @Override
+    public CartDto getCartDto(Long id) {
+        return cartCache.get(id).toDto();
+    }
+
+    @Override
+    public CartDto getCartDtoByUserId(Long userId) {
+        Long cartId = cartCache.cartIdOfUser(userId);
+        if (cartId == null) {
+            cartId = Optional.ofNullable(cartRepository.findByUserId(userId))
+                    .map(Cart::getId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Cart not found for user with id: " + userId));
+        }
+        return getCartDto(cartId);
+    }
+
+    // pending changes are dropped once the delete commits, the cart is deleted anyway
     @Transactional
     @Override
     public void clearCart(Long id) {
-        Cart cart = getCart(id);
+        cartCache.discard(id);
+        Cart cart = cartRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Cart not found with id: " + id));
         User user = cart.getUser();
         user.setCart(null);
         userRepository.save(user);
         cartItemRepository.deleteAllByCartId(id);
-        cart.getItems().clear();
+        cart.clearItems();
         cartRepository.deleteById(id);
     }
 
     @Override
     public BigDecimal getTotalPrice(Long id) {
-        Cart cart = getCart(id);
-
-        return cart.getTotalAmount();
+        return cartCache.get(id).getTotalAmount();
     }
 
     @Override
     public Cart initializeNewCart(User user) {
+        Long cachedCartId = cartCache.cartIdOfUser(user.getId());
+        if (cachedCartId != null) {
+            // callers only need the id, the reference does not hit the database
+            return cartRepository.getReferenceById(cachedCartId);
+        }
         return Optional.ofNullable(getCartByUserId(user.getId()))
                 .orElseGet(()->{
                     Cart newCart = new Cart();
@@ -62,6 +91,14 @@ public class CartService implements ICartService{
                 });
     }
 
+    @Override
+    public void flushCartOfUser(Long userId) {
+        cartCache.flushUser(userId);
+    }
+
+    /**
+     * Reads the database only, call {@link #flushCartOfUser(Long)} first to see cached changes.
+     */
     @Override
     public Cart getCartByUserId(Long userId) {
         return cartRepository.findByUserId(userId);
@@ -69,6 +106,6 @@ public class CartService implements ICartService{
 
     @Override
     public CartDto convertToCartDto(Cart cart){
-        return modelMapper.map(cart, CartDto.class);
+        return cartMapper.toDto(cart);
     }
 }
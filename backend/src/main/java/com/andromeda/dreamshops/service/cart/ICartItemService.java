@@ -1,6 +1,10 @@
 package com.andromeda.dreamshops.service.cart;
 
+import com.andromeda.dreamshops.dto.CartDto;
 import com.andromeda.dreamshops.model.CartItem;
+import com.andromeda.dreamshops.request.CartLineOperation;
+
+import java.util.List;
 
 public interface ICartItemService {
     void addItemToCart(Long cartId, Long productId, int quantity);
@@ -8,4 +12,6 @@ public interface ICartItemService {
     void updateItemQuantity(Long cartId, Long productId, int quantity);
 
     CartItem getCartItemById(Long cartId, Long productId);
+
+    CartDto applyOperations(Long cartId, List<CartLineOperation> operations);
 }
@@ -8,6 +8,8 @@ import java.math.BigDecimal;
 
 public interface ICartService {
     Cart getCart(Long id);
+    CartDto getCartDto(Long id);
+    CartDto getCartDtoByUserId(Long userId);
     void clearCart(Long id);
     BigDecimal getTotalPrice(Long id);
 
@@ -15,5 +17,7 @@ public interface ICartService {
 
     Cart getCartByUserId(Long userId);
 
+    void flushCartOfUser(Long userId);
+
     CartDto convertToCartDto(Cart cart);
 }
@@ -3,14 +3,13 @@ package com.andromeda.dreamshops.service.category;
 import com.andromeda.dreamshops.dto.CategoryDto;
 import com.andromeda.dreamshops.exceptions.AlreadyExistsException;
 import com.andromeda.dreamshops.exceptions.ResourceNotFoundException;
+import com.andromeda.dreamshops.mapper.CategoryMapper;
 import com.andromeda.dreamshops.model.Category;
 import com.andromeda.dreamshops.repository.CategoryRepository;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,7 +19,10 @@ import java.util.Optional;
 public class CategoryService implements ICategoryService{
 
     private final CategoryRepository categoryRepository;
-    private final ModelMapper modelMapper;
+    private final CategoryMapper categoryMapper;
+    // tree shaped queries (sub-categories, paths, parents) are answered from an in-memory snapshot,
+    // every category write drops it through CategoryTreeInvalidator
+    private final CategoryTreeCache categoryTreeCache;
 
     @Override
     public Category getCategoryById(Long id) {
@@ -84,14 +86,17 @@ public class CategoryService implements ICategoryService{
     // only direct sub-categories, not recursive
     @Override
     public List<Category> subCategoriesByParentId(Long parentCategoryId) {
-        return categoryRepository.findCategoriesByParentCategory_Id(parentCategoryId);
+        return categoryTreeCache.get().children(parentCategoryId);
     }
 
     // This method fetches sub-categories based on the parent category name
     // only direct sub-categories, not recursive
     @Override
     public List<Category> subCategoriesByParentName(String parentName) {
-        return categoryRepository.findCategoriesByParentCategory_Name(parentName);
+        CategoryTree tree = categoryTreeCache.get();
+        return tree.findByName(parentName)
+                .map(parent -> tree.children(parent.getId()))
+                .orElse(List.of());
     }
 
     // This method checks if a category exists by name, if yes returns it
@@ -124,27 +129,27 @@ public class CategoryService implements ICategoryService{
     // this is where the recursion ends
     // finally it aggregates all these results into a single list and returns
     // this is a depth-first traversal of the category tree
+    // the snapshot keeps the categories in that depth-first order already,
+    // so the sub-categories are just the slice of the order that belongs to the parent
     @Override
     public List<Category> getAllSubCategoriesByParentId(Long parentCategoryId) {
-        List<Category> result = new ArrayList<>();
-        List<Category> directSubCategories = categoryRepository.findCategoriesByParentCategory_Id(parentCategoryId);
-        for (Category subCategory : directSubCategories) {
-            result.add(subCategory);
-            result.addAll(getAllSubCategoriesByParentId(subCategory.getId()));
-        }
-        return result;
+        return categoryTreeCache.get().descendants(parentCategoryId);
     }
 
     @Override
     public List<Category> getAllSubCategoriesByParentName(String parentName) {
-        List<Category> result = new ArrayList<>();
-        Category currentCategory = getCategoryByName(parentName);
-        List<Category> directSubCategories = categoryRepository.findCategoriesByParentCategory_Id(currentCategory.getId());
-        for (Category subCategory : directSubCategories) {
-            result.add(subCategory);
-            result.addAll(getAllSubCategoriesByParentId(subCategory.getId()));
-        }
-        return result;
+        CategoryTree tree = categoryTreeCache.get();
+        Category currentCategory = tree.findByName(parentName)
+                .orElseThrow(()-> new ResourceNotFoundException("Category not found!!"));
+        return tree.descendants(currentCategory.getId());
+    }
+
+    @Override
+    public List<Long> getCategoryIdsInSubtree(String categoryName) {
+        CategoryTree tree = categoryTreeCache.get();
+        Category category = tree.findByName(categoryName)
+                .orElseThrow(()-> new ResourceNotFoundException("Category not found!!"));
+        return tree.subtreeIds(category.getId());
     }
 
     // now a method that will return the full category path for a given category id
@@ -154,47 +159,41 @@ public class CategoryService implements ICategoryService{
     // until it reaches a category with no parent (top-level category)
     // it collects the names of these categories in a list
     // finally it reverses the list to get the path from top-level to the given category
+    // the paths are materialized when the snapshot is built, so this is a lookup
     @Override
     public List<String> getCategoryPathById(Long categoryId) {
-        List<String> path = new ArrayList<>();
-        Category currentCategory = getCategoryById(categoryId);
-        while (currentCategory.getParentCategory() != null) {
-            path.addFirst( currentCategory.getName() );
-            currentCategory = currentCategory.getParentCategory(); // move to parent
+        CategoryTree tree = categoryTreeCache.get();
+        if (!tree.contains(categoryId)) {
+            throw new ResourceNotFoundException("Category not found!!");
         }
-        path.addFirst(currentCategory.getName());
-        return path;
+        return tree.path(categoryId);
     }
 
     // a method that will return list categories that are on top of it
-    // for laptop it will return [Electronics, Computers]
+    // for laptop it will return [Computers, Electronics] (nearest parent first)
     @Override
     public List<Category> getParentCategories(Long categoryId) {
-        List<Category> parents = new ArrayList<>();
-        Category currentCategory = getCategoryById(categoryId);
-        while (currentCategory.getParentCategory() != null) {
-            currentCategory = currentCategory.getParentCategory();
-            parents.add(currentCategory);
+        CategoryTree tree = categoryTreeCache.get();
+        if (!tree.contains(categoryId)) {
+            throw new ResourceNotFoundException("Category not found!!");
         }
-        return parents;
+        return tree.ancestors(categoryId);
     }
 
     // a method that will return the top-level categories (categories with no parent)
     @Override
     public List<Category> getTopLevelCategories() {
-        return categoryRepository.findCategoriesByParentCategoryIsNull();
+        return categoryTreeCache.get().roots();
     }
 
     @Override
     public CategoryDto convertToDto(Category category) {
-        return modelMapper.map(category, CategoryDto.class);
+        return categoryMapper.toDto(category);
     }
 
     @Override
     public List<CategoryDto> convertToDto(List<Category> categoryList) {
-        return categoryList.stream()
-                .map(this::convertToDto)
-                .toList();
+        return categoryMapper.toDtoList(categoryList);
     }
 
 }
@@ -0,0 +1,255 @@
+package com.andromeda.dreamshops.service.category;
+
+import com.andromeda.dreamshops.model.Category;
+
+import java.util.*;
+
+/**
+ * Immutable snapshot of the whole category tree.
+ * <p>
+ * Nodes are stored in depth-first pre-order, so the sub-tree of a node is the contiguous slice
+ * {@code (enter[i], exit[i]]} of that order (Euler-tour interval). Paths and ancestors are
+ * materialized when the snapshot is built, so sub-tree, path and ancestor lookups are served
+ * from arrays without touching the database.
+ * <p>
+ * The categories handed out are detached copies holding id, name and parent; they are shared between
+ * requests and must not be modified or saved.
+ */
+public final class CategoryTree {
+
+    private final long version;
+
+    private final Map<Long, Integer> indexById;
+    private final Map<String, Integer> indexByName;
+    private final int[] parent;
+    private final int[] enter;
+    private final int[] exit;
+    private final List<Category> preOrder;
+    private final List<List<Category>> children;
+    private final List<List<Category>> ancestors;
+    private final List<List<String>> paths;
+    private final List<Category> roots;
+
+    private CategoryTree(long version,
+                         Map<Long, Integer> indexById,
+                         Map<String, Integer> indexByName,
+                         int[] parent,
+                         int[] enter,
+                         int[] exit,
+                         List<Category> preOrder,
+                         List<List<Category>> children,
+                         List<List<Category>> ancestors,
+                         List<List<String>> paths,
+                         List<Category> roots) {
+        this.version = version;
+        this.indexById = indexById;
+        this.indexByName = indexByName;
+        this.parent = parent;
+        this.enter = enter;
+        this.exit = exit;
+        this.preOrder = preOrder;
+        this.children = children;
+        this.ancestors = ancestors;
+        this.paths = paths;
+        this.roots = roots;
+    }
+
+    static CategoryTree build(List<Category> categories, long version) {
+        List<Category> sorted = new ArrayList<>(categories);
+        sorted.sort(Comparator.comparing(Category::getId));
+        int size = sorted.size();
+
+        Map<Long, Integer> indexById = new HashMap<>(size * 2);
+        Map<String, Integer> indexByName = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            indexById.put(sorted.get(i).getId(), i);
+            indexByName.put(sorted.get(i).getName(), i);
+        }
+
+        // parent links, a parent that is not part of the snapshot makes the node a root
+        int[] parent = new int[size];
+        List<List<Integer>> childIndexes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            childIndexes.add(new ArrayList<>());
+        }
+        List<Integer> rootIndexes = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Category parentCategory = sorted.get(i).getParentCategory();
+            Integer parentIndex = parentCategory == null ? null : indexById.get(parentCategory.getId());
+            parent[i] = parentIndex == null ? -1 : parentIndex;
+            if (parentIndex == null) {
+                rootIndexes.add(i);
+            } else {
+                childIndexes.get(parentIndex).add(i);
+            }
+        }
+
+        // iterative depth-first walk from the roots (then from anything unreached, e.g. a cycle)
+        // assigning pre-order positions, the copies and the materialized paths on the way down
+        int[] enter = new int[size];
+        int[] exit = new int[size];
+        Arrays.fill(enter, -1);
+        Category[] copies = new Category[size];
+        Category[] preOrder = new Category[size];
+        List<List<Category>> ancestors = new ArrayList<>(Collections.nCopies(size, List.of()));
+        List<List<String>> paths = new ArrayList<>(Collections.nCopies(size, List.of()));
+        int position = 0;
+
+        List<Integer> starts = new ArrayList<>(rootIndexes);
+        for (int i = 0; i < size; i++) {
+            starts.add(i);
+        }
+        Deque<int[]> stack = new ArrayDeque<>(); // {node, next child to visit}
+        for (int start : starts) {
+            if (enter[start] != -1) {
+                continue;
+            }
+            if (parent[start] != -1 && enter[parent[start]] == -1) {
+                parent[start] = -1; // part of a cycle, cut it here
+            }
+            position = visit(start, position, sorted, parent, enter, copies, preOrder, ancestors, paths);
+            stack.push(new int[]{start, 0});
+            while (!stack.isEmpty()) {
+                int[] frame = stack.peek();
+                List<Integer> nodeChildren = childIndexes.get(frame[0]);
+                if (frame[1] < nodeChildren.size()) {
+                    int child = nodeChildren.get(frame[1]++);
+                    if (enter[child] == -1) {
+                        position = visit(child, position, sorted, parent, enter, copies, preOrder, ancestors, paths);
+                        stack.push(new int[]{child, 0});
+                    }
+                } else {
+                    exit[frame[0]] = position - 1;
+                    stack.pop();
+                }
+            }
+        }
+
+        List<List<Category>> children = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            List<Category> nodeChildren = new ArrayList<>();
+            for (int child : childIndexes.get(i)) {
+                if (parent[child] == i) {
+                    nodeChildren.add(copies[child]);
+                }
+            }
+            children.add(Collections.unmodifiableList(nodeChildren));
+        }
+        List<Category> roots = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (parent[i] == -1) {
+                roots.add(copies[i]);
+            }
+        }
+
+        return new CategoryTree(version, indexById, indexByName, parent, enter, exit,
+                Collections.unmodifiableList(Arrays.asList(preOrder)),
+                children, ancestors, paths, Collections.unmodifiableList(roots));
+    }
+
+    private static int visit(int node,
+                             int position,
+                             List<Category> sorted,
+                             int[] parent,
+                             int[] enter,
+                             Category[] copies,
+                             Category[] preOrder,
+                             List<List<Category>> ancestors,
+                             List<List<String>> paths) {
+        Category source = sorted.get(node);
+        Category parentCopy = parent[node] == -1 ? null : copies[parent[node]];
+        Category copy = new Category(source.getName(), parentCopy);
+        copy.setId(source.getId());
+        copies[node] = copy;
+        enter[node] = position;
+        preOrder[position] = copy;
+
+        List<Category> nodeAncestors = new ArrayList<>();
+        List<String> nodePath = new ArrayList<>();
+        if (parentCopy != null) {
+            nodeAncestors.add(parentCopy);
+            nodeAncestors.addAll(ancestors.get(parent[node]));
+            nodePath.addAll(paths.get(parent[node]));
+        }
+        nodePath.add(copy.getName());
+        ancestors.set(node, Collections.unmodifiableList(nodeAncestors));
+        paths.set(node, Collections.unmodifiableList(nodePath));
+        return position + 1;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return preOrder.size();
+    }
+
+    public boolean contains(Long categoryId) {
+        return indexById.containsKey(categoryId);
+    }
+
+    public Optional<Category> findById(Long categoryId) {
+        Integer index = indexById.get(categoryId);
+        return index == null ? Optional.empty() : Optional.of(preOrder.get(enter[index]));
+    }
+
+    public Optional<Category> findByName(String name) {
+        Integer index = indexByName.get(name);
+        return index == null ? Optional.empty() : Optional.of(preOrder.get(enter[index]));
+    }
+
+    // every category below the given one, depth first, the category itself excluded
+    public List<Category> descendants(Long categoryId) {
+        Integer index = indexById.get(categoryId);
+        if (index == null) {
+            return List.of();
+        }
+        return preOrder.subList(enter[index] + 1, exit[index] + 1);
+    }
+
+    // ids of the category and of everything below it
+    public List<Long> subtreeIds(Long categoryId) {
+        Integer index = indexById.get(categoryId);
+        if (index == null) {
+            return List.of();
+        }
+        List<Category> subtree = preOrder.subList(enter[index], exit[index] + 1);
+        List<Long> ids = new ArrayList<>(subtree.size());
+        for (Category category : subtree) {
+            ids.add(category.getId());
+        }
+        return ids;
+    }
+
+    public List<Category> children(Long categoryId) {
+        Integer index = indexById.get(categoryId);
+        return index == null ? List.of() : children.get(index);
+    }
+
+    // parents of the category, nearest first: for Laptop -> [Computers, Electronics]
+    public List<Category> ancestors(Long categoryId) {
+        Integer index = indexById.get(categoryId);
+        return index == null ? List.of() : ancestors.get(index);
+    }
+
+    // names from the top level category down to the category: [Electronics, Computers, Laptop]
+    public List<String> path(Long categoryId) {
+        Integer index = indexById.get(categoryId);
+        return index == null ? List.of() : paths.get(index);
+    }
+
+    public List<Category> roots() {
+        return roots;
+    }
+
+    // true if the category is the ancestor itself or lies anywhere below it
+    public boolean isInSubtree(Long ancestorId, Long categoryId) {
+        Integer ancestor = indexById.get(ancestorId);
+        Integer category = indexById.get(categoryId);
+        if (ancestor == null || category == null) {
+            return false;
+        }
+        return enter[ancestor] <= enter[category] && enter[category] <= exit[ancestor];
+    }
+}
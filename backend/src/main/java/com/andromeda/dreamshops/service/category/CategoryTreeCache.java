@@ -0,0 +1,70 @@
+package com.andromeda.dreamshops.service.category;
+
+import com.andromeda.dreamshops.repository.CategoryRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the current {@link CategoryTree} snapshot.
+ * <p>
+ * The snapshot is built lazily with a single query and dropped whenever a category is written
+ * (see {@link CategoryTreeInvalidator}). Every invalidation bumps the version, and a snapshot is
+ * only installed if no invalidation happened while it was being loaded, so a reader racing a
+ * writer never publishes a stale tree.
+ */
+@Component
+@RequiredArgsConstructor
+public class CategoryTreeCache {
+    private final CategoryRepository categoryRepository;
+
+    private final AtomicReference<CategoryTree> snapshot = new AtomicReference<>();
+    private final AtomicLong version = new AtomicLong();
+    private final Object loadLock = new Object();
+
+    public CategoryTree get() {
+        CategoryTree tree = snapshot.get();
+        if (tree != null) {
+            return tree;
+        }
+        synchronized (loadLock) {
+            tree = snapshot.get();
+            if (tree != null) {
+                return tree;
+            }
+            long loadVersion = version.get();
+            tree = CategoryTree.build(categoryRepository.findAll(), loadVersion);
+            if (version.get() == loadVersion) {
+                snapshot.compareAndSet(null, tree);
+            }
+            return tree;
+        }
+    }
+
+    // drops the snapshot now, and again once the surrounding transaction (if any) has committed,
+    // so that a tree loaded in between from not yet committed data is not kept either
+    public void invalidate() {
+        evict();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict();
+                }
+            });
+        }
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    private void evict() {
+        version.incrementAndGet();
+        snapshot.set(null);
+    }
+}
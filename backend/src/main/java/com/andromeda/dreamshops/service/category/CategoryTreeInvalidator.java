@@ -0,0 +1,29 @@
+package com.andromeda.dreamshops.service.category;
+
+import com.andromeda.dreamshops.model.Category;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * JPA listener on {@link Category} that drops the cached category tree on every insert, update and delete,
+ * including the ones CategoryService does not make itself (e.g. cascades from Product).
+ * <p>
+ * Hibernate creates the listener while the entityManagerFactory is built, before the CategoryRepository that
+ * CategoryTreeCache needs can exist, so the cache is looked up on the first change instead of injected.
+ */
+@Component
+@RequiredArgsConstructor
+public class CategoryTreeInvalidator {
+    private final ObjectProvider<CategoryTreeCache> categoryTreeCache;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void categoryChanged(Category category) {
+        categoryTreeCache.ifAvailable(CategoryTreeCache::invalidate);
+    }
+}
@@ -25,6 +25,9 @@ public interface ICategoryService {
 
     List<Category> getAllSubCategoriesByParentName(String parentName);
 
+    // ids of the category and all of its sub-categories, e.g. Electronics, Computers, Laptop, Desktop ...
+    List<Long> getCategoryIdsInSubtree(String categoryName);
+
     // now a method that will return the full category path for a given category id
     // e.g., if we have a category Laptop under Computers under Electronics
     // then getCategoryPath(LaptopId) should return ["Electronics", "Computers", "Laptop"]
@@ -5,24 +5,31 @@ import com.andromeda.dreamshops.exceptions.ResourceProcessingException;
 import com.cloudinary.Cloudinary;
 import com.cloudinary.utils.ObjectUtils;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
 
+// the default storage, replaced by LocalStorageService with the local-storage profile
 @Service
+@Profile("!local-storage")
 @RequiredArgsConstructor
 public class CloudProviderService implements ICloudProviderService {
     private final Cloudinary cloudinary;
 
 
+    // the file is sent from disk in small chunks, it is never read into memory as a whole
     @Override
-    public Map uploadImage(MultipartFile file,
+    public Map uploadImage(Path file,
                            String folder,
                            String publicId,
                            String transformation) throws IOException {
-        if (file == null || file.isEmpty()){
+        if (file == null || Files.size(file) == 0){
             throw new ResourceNotFoundException("Image file cannot be null or empty");
         }
         Map<String,Object> params = ObjectUtils.asMap(
@@ -35,7 +42,20 @@ public class CloudProviderService implements ICloudProviderService {
         if (transformation != null && !transformation.isEmpty()) {
             params.put("transformation", transformation);
         }
-        return cloudinary.uploader().upload(file.getBytes(), params);
+        return cloudinary.uploader().upload(file.toFile(), params);
+    }
+
+    @Override
+    public Map uploadImage(MultipartFile file,
+                           String folder,
+                           String publicId,
+                           String transformation) throws IOException {
+        if (file == null || file.isEmpty()){
+            throw new ResourceNotFoundException("Image file cannot be null or empty");
+        }
+        try (TempUploadFile tempFile = TempUploadFile.of(file)) {
+            return uploadImage(tempFile.path(), folder, publicId, transformation);
+        }
     }
 
     @Override
@@ -61,10 +81,10 @@ public class CloudProviderService implements ICloudProviderService {
 
     @Override
     public Map updateImageByPublicId(String publicId,
-                                     MultipartFile newFile,
+                                     Path newFile,
                                      String folder,
                                      String transformation) throws IOException {
-        if(newFile==null || newFile.isEmpty()){
+        if(newFile==null || Files.size(newFile) == 0){
             throw new ResourceNotFoundException("New image file cannot be null or empty");
         }
         Map<String, Object> params = ObjectUtils.asMap(
@@ -76,7 +96,20 @@ public class CloudProviderService implements ICloudProviderService {
         if(transformation != null && !transformation.isEmpty()){
             params.put("transformation", transformation);
         }
-        return cloudinary.uploader().upload(newFile.getBytes(), params);
+        return cloudinary.uploader().upload(newFile.toFile(), params);
+    }
+
+    @Override
+    public Map updateImageByPublicId(String publicId,
+                                     MultipartFile newFile,
+                                     String folder,
+                                     String transformation) throws IOException {
+        if(newFile==null || newFile.isEmpty()){
+            throw new ResourceNotFoundException("New image file cannot be null or empty");
+        }
+        try (TempUploadFile tempFile = TempUploadFile.of(newFile)) {
+            return updateImageByPublicId(publicId, tempFile.path(), folder, transformation);
+        }
     }
 
     @Override
@@ -91,6 +124,14 @@ public class CloudProviderService implements ICloudProviderService {
         cloudinary.uploader().destroy(publicId,ObjectUtils.emptyMap());
     }
 
+    // the admin api deletes up to 100 resources per call
+    @Override
+    public void deleteImagesByPublicIds(List<String> publicIds) throws Exception {
+        for (int from = 0; from < publicIds.size(); from += 100) {
+            cloudinary.api().deleteResources(publicIds.subList(from, Math.min(from + 100, publicIds.size())), ObjectUtils.emptyMap());
+        }
+    }
+
     @Override
     public void deleteFolder(String folder) throws Exception {
         cloudinary.api().deleteResourcesByPrefix(folder,ObjectUtils.emptyMap());
@@ -3,14 +3,20 @@ package com.andromeda.dreamshops.service.cloudprovider;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
 
+// uploads are streamed from disk; the MultipartFile variants move the part to a TempUploadFile first
 public interface ICloudProviderService {
+    Map uploadImage(Path file, String folder, String publicId, String transformation) throws IOException;
     Map uploadImage(MultipartFile file, String folder, String publicId, String transformation) throws IOException;
     Map uploadImage(MultipartFile file, String folder) throws IOException;
     Map updateImageByImageUrl(String imageUrl, MultipartFile newFile, String folder, String publicId, String transformation) throws IOException;
+    Map updateImageByPublicId(String publicId, Path newFile, String folder, String transformation) throws IOException;
     Map updateImageByPublicId(String publicId, MultipartFile newFile, String folder, String transformation) throws IOException;
     void deleteImageByImageURl(String imageUrl) throws IOException;
     void deleteImageByPublicId(String publicId) throws IOException;
+    void deleteImagesByPublicIds(List<String> publicIds) throws Exception;
     void deleteFolder(String folder) throws Exception;
 }
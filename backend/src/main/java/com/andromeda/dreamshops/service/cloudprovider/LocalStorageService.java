@@ -0,0 +1,350 @@
+package com.andromeda.dreamshops.service.cloudprovider;
+
+import com.andromeda.dreamshops.exceptions.ResourceNotFoundException;
+import com.andromeda.dreamshops.exceptions.ResourceProcessingException;
+import com.andromeda.dreamshops.service.image.ImageDerivativeService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Stores images on the local filesystem instead of Cloudinary, for on-prem deployments and test runs.
+ * Active with the {@code local-storage} profile, see {@code application-local-storage.properties}.
+ * <p>
+ * The folders and public ids are the same as in the cloud: an image uploaded to folder
+ * {@code dreamshops/shops/shop-1/products} with public id {@code product-1-phone} gets the public id
+ * {@code dreamshops/shops/shop-1/products/product-1-phone}, and that is a directory under
+ * {@code storage.local.root-dir}. Deleting a folder deletes the directory tree.
+ * Inside it the content is stored content addressed, as {@code <sha-256>.<ext>}, so the url of a stored
+ * image never changes its content and can be cached for good; overwriting writes a new file and drops the old one.
+ * Writes and deletes of one public id are serialized, so the newest of two concurrent overwrites wins.
+ * <p>
+ * Files are written with {@link FileChannel#transferTo}, to a temp file that is moved in place,
+ * so readers never see a half written image.
+ * Of the Cloudinary transformations only the fixed size crop ({@code c_fill,h_..,w_..}) is applied, by
+ * {@link ImageDerivativeService}; other transformations are ignored and the original is stored.
+ */
+@Slf4j
+@Service
+@Profile("local-storage")
+public class LocalStorageService implements ICloudProviderService {
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+    private static final int STRIPES = 64;
+
+    private final Path rootDir;
+    private final String publicUrl;
+    private final ImageDerivativeService derivativeService;
+    // serializes the writes and deletes of one public id directory, so concurrent overwrites don't delete each other's file
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    public LocalStorageService(@Value("${storage.local.root-dir}") Path rootDir,
+                               @Value("${storage.local.public-url}") String publicUrl,
+                               ImageDerivativeService derivativeService) throws IOException {
+        this.rootDir = Files.createDirectories(rootDir.toAbsolutePath().normalize());
+        this.publicUrl = publicUrl.endsWith("/") ? publicUrl.substring(0, publicUrl.length() - 1) : publicUrl;
+        this.derivativeService = derivativeService;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public Map uploadImage(Path file, String folder, String publicId, String transformation) throws IOException {
+        if (file == null || Files.size(file) == 0) {
+            throw new ResourceNotFoundException("Image file cannot be null or empty");
+        }
+        Path transformed = transform(file, transformation);
+        try {
+            return store(transformed != null ? transformed : file, folder, publicId);
+        } finally {
+            if (transformed != null) {
+                Files.deleteIfExists(transformed);
+            }
+        }
+    }
+
+    private Map store(Path file, String folder, String publicId) throws IOException {
+        String hash = sha256(file);
+        String fullPublicId = fullPublicId(folder, publicId != null && !publicId.isEmpty() ? publicId : hash);
+        Path directory = resolve(fullPublicId);
+        String fileName = hash + extensionOf(file.getFileName().toString());
+        Path target = directory.resolve(fileName);
+
+        ReentrantLock lock = stripeOf(directory);
+        lock.lock();
+        try {
+            Files.createDirectories(directory);
+            if (!Files.exists(target)) {
+                write(file, directory, target);
+            }
+            deleteOtherVersions(directory, fileName);
+        } finally {
+            lock.unlock();
+        }
+
+        return Map.of(
+                "public_id", fullPublicId,
+                "secure_url", publicUrl + "/" + fullPublicId + "/" + fileName,
+                "etag", hash,
+                // the stored file has the same content
+                "bytes", Files.size(file));
+    }
+
+    @Override
+    public Map uploadImage(MultipartFile file, String folder, String publicId, String transformation) throws IOException {
+        if (file == null || file.isEmpty()) {
+            throw new ResourceNotFoundException("Image file cannot be null or empty");
+        }
+        try (TempUploadFile tempFile = TempUploadFile.of(file)) {
+            return uploadImage(tempFile.path(), folder, publicId, transformation);
+        }
+    }
+
+    @Override
+    public Map uploadImage(MultipartFile file, String folder) throws IOException {
+        return uploadImage(file, folder, null, null);
+    }
+
+    @Override
+    public Map updateImageByImageUrl(String imageUrl, MultipartFile newFile, String folder, String publicId, String transformation) throws IOException {
+        if (newFile == null || newFile.isEmpty()) {
+            throw new ResourceNotFoundException("New image file cannot be null or empty");
+        }
+        if (imageUrl == null || imageUrl.isEmpty()) {
+            throw new ResourceNotFoundException("Image URL cannot be null or empty");
+        }
+        deleteImageByImageURl(imageUrl);
+        return uploadImage(newFile, folder, publicId, transformation);
+    }
+
+    /**
+     * Like Cloudinary, the given public id may already contain the folder (as returned by an upload)
+     * or be relative to it.
+     */
+    @Override
+    public Map updateImageByPublicId(String publicId, Path newFile, String folder, String transformation) throws IOException {
+        if (newFile == null || Files.size(newFile) == 0) {
+            throw new ResourceNotFoundException("New image file cannot be null or empty");
+        }
+        String relativeId = publicId.startsWith(folder + "/") ? publicId.substring(folder.length() + 1) : publicId;
+        return uploadImage(newFile, folder, relativeId, transformation);
+    }
+
+    @Override
+    public Map updateImageByPublicId(String publicId, MultipartFile newFile, String folder, String transformation) throws IOException {
+        if (newFile == null || newFile.isEmpty()) {
+            throw new ResourceNotFoundException("New image file cannot be null or empty");
+        }
+        try (TempUploadFile tempFile = TempUploadFile.of(newFile)) {
+            return updateImageByPublicId(publicId, tempFile.path(), folder, transformation);
+        }
+    }
+
+    @Override
+    public void deleteImageByImageURl(String imageUrl) throws IOException {
+        deleteImageByPublicId(extractPublicId(imageUrl));
+    }
+
+    @Override
+    public void deleteImageByPublicId(String publicId) throws IOException {
+        Path directory = resolve(publicId);
+        ReentrantLock lock = stripeOf(directory);
+        lock.lock();
+        try {
+            FileSystemUtils.deleteRecursively(directory);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteImagesByPublicIds(List<String> publicIds) throws Exception {
+        for (String publicId : publicIds) {
+            deleteImageByPublicId(publicId);
+        }
+    }
+
+    @Override
+    public void deleteFolder(String folder) throws Exception {
+        FileSystemUtils.deleteRecursively(resolve(folder));
+    }
+
+    /**
+     * Finds the stored file behind a url path below {@code storage.local.public-url},
+     * e.g. {@code dreamshops/shops/shop-1/products/product-1-phone/<sha-256>.jpg}.
+     */
+    public Optional<Path> findFile(String path) {
+        Path file = resolve(path);
+        return Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    /**
+     * Sends part of a stored file to the channel with {@link FileChannel#transferTo}, which lets the kernel
+     * copy straight from the page cache to the socket where the platform supports it.
+     * @return the number of bytes sent
+     */
+    public long transferTo(Path file, long position, long count, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long sent = 0;
+            while (sent < count) {
+                long transferred = channel.transferTo(position + sent, count - sent, target);
+                if (transferred <= 0) {
+                    break;
+                }
+                sent += transferred;
+            }
+            return sent;
+        }
+    }
+
+    /**
+     * Applies a {@code c_fill} transformation with both width and height.
+     * @return the transformed temp file, or null if there is nothing to apply
+     */
+    private Path transform(Path file, String transformation) throws IOException {
+        if (transformation == null || transformation.isEmpty()) {
+            return null;
+        }
+        boolean fill = false;
+        int width = 0;
+        int height = 0;
+        for (String part : transformation.split(",")) {
+            String option = part.trim();
+            if (option.equals("c_fill")) {
+                fill = true;
+            } else if (option.matches("w_\\d{1,5}")) {
+                width = Integer.parseInt(option.substring(2));
+            } else if (option.matches("h_\\d{1,5}")) {
+                height = Integer.parseInt(option.substring(2));
+            }
+        }
+        if (!fill || width == 0 || height == 0) {
+            log.debug("Ignoring transformation {} for local storage", transformation);
+            return null;
+        }
+        try {
+            return derivativeService.renderFill(file, width, height).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new ResourceProcessingException("Could not transform the image: " + e.getCause());
+        }
+    }
+
+    private void write(Path source, Path directory, Path target) throws IOException {
+        Path temp = directory.resolve(".upload-" + UUID.randomUUID());
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+            out.force(false);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // an overwritten image: only the newest content stays
+    private void deleteOtherVersions(Path directory, String keep) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!name.equals(keep) && !name.startsWith(".upload-") && Files.isRegularFile(file)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private ReentrantLock stripeOf(Path directory) {
+        return stripes[Math.floorMod(directory.hashCode(), STRIPES)];
+    }
+
+    private String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(HASH_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private String fullPublicId(String folder, String publicId) {
+        if (folder == null || folder.isEmpty()) {
+            return publicId;
+        }
+        return folder.endsWith("/") ? folder + publicId : folder + "/" + publicId;
+    }
+
+    // keeps every path inside the root directory
+    private Path resolve(String path) {
+        if (path == null || path.isBlank()) {
+            throw new ResourceProcessingException("Invalid storage path: " + path);
+        }
+        Path resolved = rootDir.resolve(path).normalize();
+        if (!resolved.startsWith(rootDir) || resolved.equals(rootDir)) {
+            throw new ResourceProcessingException("Invalid storage path: " + path);
+        }
+        return resolved;
+    }
+
+    // <public-url>/<folder>/<public id>/<sha-256>.<ext> -> <folder>/<public id>
+    private String extractPublicId(String imageUrl) {
+        if (imageUrl == null || !imageUrl.startsWith(publicUrl + "/")) {
+            throw new ResourceProcessingException("Invalid image url: " + imageUrl);
+        }
+        String path = imageUrl.substring(publicUrl.length() + 1);
+        int lastSlash = path.lastIndexOf('/');
+        if (lastSlash <= 0) {
+            throw new ResourceProcessingException("Invalid image url structure: " + imageUrl);
+        }
+        return path.substring(0, lastSlash);
+    }
+
+    private static String extensionOf(String fileName) {
+        int lastDot = fileName.lastIndexOf('.');
+        String extension = lastDot >= 0 ? fileName.substring(lastDot).toLowerCase() : "";
+        return extension.matches("\\.[a-z0-9]{1,10}") ? extension : "";
+    }
+}
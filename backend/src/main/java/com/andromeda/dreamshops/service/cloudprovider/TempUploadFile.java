@@ -0,0 +1,53 @@
+package com.andromeda.dreamshops.service.cloudprovider;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * An uploaded file moved to a temp file of its own, deleted again on {@link #close()}.
+ * <p>
+ * Multipart parts are written to disk by the servlet container while the request is read
+ * (see {@code spring.servlet.multipart.file-size-threshold}); {@link MultipartFile#transferTo(java.io.File)}
+ * moves such a part instead of copying it, so the content never has to be held on the heap.
+ * The temp file then stays readable after the request is done, for work that outlives it.
+ */
+public final class TempUploadFile implements AutoCloseable {
+    private final Path path;
+
+    private TempUploadFile(Path path) {
+        this.path = path;
+    }
+
+    public static TempUploadFile of(MultipartFile file) throws IOException {
+        Path path = Files.createTempFile("upload-", suffixOf(file.getOriginalFilename()));
+        try {
+            file.transferTo(path.toFile());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        return new TempUploadFile(path);
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    // keeps the extension, some providers use it to detect the type of the file
+    private static String suffixOf(String fileName) {
+        if (fileName == null) {
+            return null;
+        }
+        int lastDot = fileName.lastIndexOf('.');
+        String suffix = lastDot >= 0 ? fileName.substring(lastDot) : "";
+        return suffix.matches("\\.[A-Za-z0-9]{1,10}") ? suffix : null;
+    }
+}
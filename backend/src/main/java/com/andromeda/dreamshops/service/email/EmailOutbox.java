@@ -0,0 +1,151 @@
+package com.andromeda.dreamshops.service.email;
+
+import com.andromeda.dreamshops.model.OutboxEmail;
+import com.andromeda.dreamshops.repository.OutboxEmailRepository;
+import com.andromeda.dreamshops.service.outbox.OutboxQueue;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends emails in the background, so a signup neither waits for the mail server nor fails with it.
+ * <p>
+ * {@link #enqueue} only saves the email in the transaction of the caller. Every {@code mail.outbox.interval-ms}
+ * up to {@code mail.outbox.workers} x {@code mail.outbox.session-size} due emails are claimed and sent
+ * on {@code mail.outbox.workers} threads, each sending its share over one SMTP connection.
+ * An email the server did not accept is tried again after an exponential backoff, and given up after
+ * {@code mail.outbox.max-attempts}. Emails are claimed through {@link OutboxQueue}, so several nodes can run the outbox;
+ * an email whose node dies while sending it is sent again once the claim runs out.
+ * <p>
+ * Metrics: {@code mail.outbox.sent}, {@code mail.outbox.failures} and {@code mail.outbox.abandoned},
+ * and the {@code mail.outbox.session} timer.
+ */
+@Slf4j
+@Component
+public class EmailOutbox {
+    private final OutboxEmailRepository outboxRepository;
+    private final EmailService emailService;
+    private final MeterRegistry meterRegistry;
+    private final OutboxQueue<OutboxEmail> queue;
+    private final ExecutorService workers;
+    private final int workerCount;
+    private final int sessionSize;
+
+    public EmailOutbox(OutboxEmailRepository outboxRepository,
+                       EmailService emailService,
+                       MeterRegistry meterRegistry,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${mail.outbox.workers:2}") int workerCount,
+                       @Value("${mail.outbox.session-size:20}") int sessionSize,
+                       @Value("${mail.outbox.max-attempts:6}") int maxAttempts,
+                       @Value("${mail.outbox.initial-backoff:30s}") Duration initialBackoff,
+                       @Value("${mail.outbox.max-backoff:30m}") Duration maxBackoff,
+                       @Value("${mail.outbox.claim-timeout:5m}") Duration claimTimeout) {
+        this.outboxRepository = outboxRepository;
+        this.emailService = emailService;
+        this.meterRegistry = meterRegistry;
+        this.queue = new OutboxQueue<>(outboxRepository, new TransactionTemplate(transactionManager),
+                maxAttempts, initialBackoff, maxBackoff, claimTimeout);
+        this.workerCount = Math.max(1, workerCount);
+        this.sessionSize = Math.max(1, sessionSize);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(this.workerCount, task -> {
+            Thread thread = new Thread(task, "mail-outbox-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // joins the transaction of the caller, so the email is only sent if the change it is about commits
+    public void enqueue(String to, String subject, String body) {
+        outboxRepository.save(new OutboxEmail(to, subject, body));
+    }
+
+    @Scheduled(fixedDelayString = "${mail.outbox.interval-ms:1000}")
+    public void dispatch() {
+        List<OutboxEmail> due = queue.claimDue(workerCount * sessionSize);
+        if (due.isEmpty()) {
+            return;
+        }
+        List<CompletableFuture<Void>> sessions = new ArrayList<>();
+        for (int from = 0; from < due.size(); from += sessionSize) {
+            List<OutboxEmail> session = due.subList(from, Math.min(from + sessionSize, due.size()));
+            sessions.add(CompletableFuture.runAsync(() -> sendSession(session), workers));
+        }
+        // the next run starts once these are done, so there are never more than mail.outbox.workers connections
+        CompletableFuture.allOf(sessions.toArray(CompletableFuture[]::new)).exceptionally(e -> {
+            log.error("Sending outbox emails failed", e);
+            return null;
+        }).join();
+    }
+
+    private void sendSession(List<OutboxEmail> emails) {
+        Map<MimeMessage, OutboxEmail> byMessage = new IdentityHashMap<>();
+        List<MimeMessage> messages = new ArrayList<>();
+        for (OutboxEmail email : emails) {
+            try {
+                MimeMessage message = emailService.createHtmlMessage(email.getRecipient(), email.getSubject(), email.getBody());
+                byMessage.put(message, email);
+                messages.add(message);
+            } catch (MessagingException | RuntimeException e) {
+                recordFailure(email, e);
+            }
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Map<MimeMessage, Exception> failed = emailService.sendAll(messages);
+        List<Long> sent = new ArrayList<>();
+        for (MimeMessage message : messages) {
+            Exception failure = failed.get(message);
+            if (failure != null) {
+                recordFailure(byMessage.get(message), failure);
+            } else {
+                sent.add(byMessage.get(message).getId());
+            }
+        }
+        if (!sent.isEmpty()) {
+            queue.remove(sent);
+            meterRegistry.counter("mail.outbox.sent").increment(sent.size());
+        }
+        sample.stop(meterRegistry.timer("mail.outbox.session"));
+    }
+
+    private void recordFailure(OutboxEmail email, Exception e) {
+        int attempts = email.getAttempts() + 1;
+        LocalDateTime nextAttemptAt = queue.recordFailure(email, e);
+        if (nextAttemptAt != null) {
+            meterRegistry.counter("mail.outbox.failures").increment();
+            log.warn("Could not send email {} to {} (attempt {}), retrying at {}", email.getId(), email.getRecipient(), attempts, nextAttemptAt, e);
+        } else {
+            meterRegistry.counter("mail.outbox.abandoned").increment();
+            log.error("Giving up sending email {} to {} after {} attempts", email.getId(), email.getRecipient(), attempts, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+}
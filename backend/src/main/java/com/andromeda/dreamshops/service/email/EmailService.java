@@ -3,23 +3,46 @@ package com.andromeda.dreamshops.service.email;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 import lombok.RequiredArgsConstructor;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
 
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
 @Service
 @RequiredArgsConstructor
 public class EmailService {
     private final JavaMailSender mailSender;
 
-    public void sendVerificationEmail(String to, String subject, String body) throws MessagingException {
+    public MimeMessage createHtmlMessage(String to, String subject, String body) throws MessagingException {
         MimeMessage mimeMessage = mailSender.createMimeMessage();
 
         var helper = new MimeMessageHelper(mimeMessage, true);
         helper.setTo(to);
         helper.setSubject(subject);
         helper.setText(body, true);
-        mailSender.send(mimeMessage);
+        return mimeMessage;
+    }
 
+    /**
+     * Sends the messages over one SMTP connection, reconnecting only if the server drops it.
+     * @return the messages that were not sent, with the reason; empty if all were sent
+     */
+    public Map<MimeMessage, Exception> sendAll(List<MimeMessage> messages) {
+        Map<MimeMessage, Exception> failed = new IdentityHashMap<>();
+        try {
+            mailSender.send(messages.toArray(MimeMessage[]::new));
+        } catch (MailSendException e) {
+            // empty if only closing the connection failed, after everything was sent
+            e.getFailedMessages().forEach((message, cause) -> failed.put((MimeMessage) message, cause));
+        } catch (MailException e) {
+            // e.g. the login failed, nothing was sent
+            messages.forEach(message -> failed.put(message, e));
+        }
+        return failed;
     }
 }
@@ -1,6 +1,7 @@
 package com.andromeda.dreamshops.service.image;
 
 import com.andromeda.dreamshops.dto.ImageDto;
+import com.andromeda.dreamshops.dto.ImageUploadResultDto;
 import com.andromeda.dreamshops.model.Image;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -11,7 +12,7 @@ import java.util.List;
 public interface IImageService {
     Image getImagebyId(Long id);
     void deleteImageById(Long id) throws IOException;
-    List<ImageDto> saveImages(List<MultipartFile> files, Long productId) throws IOException;
+    List<ImageUploadResultDto> saveImages(List<MultipartFile> files, Long productId);
     void updateImage(MultipartFile file, Long imageId) throws IOException;
     List<Image> getImagesByProductId(Long productId);
     ImageDto convertToDto(Image image);
@@ -0,0 +1,227 @@
+package com.andromeda.dreamshops.service.image;
+
+import com.andromeda.dreamshops.enums.ImageVariant;
+import com.andromeda.dreamshops.exceptions.ResourceProcessingException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders the smaller sizes of uploaded images ({@link ImageVariant}) and fixed size crops,
+ * for product listings and for the logo, banner and profile picture transformations of the local storage.
+ * <p>
+ * Decoding and scaling is CPU and memory heavy (a decoded 12 megapixel photo takes about 48 MB),
+ * so it runs on a fixed pool of {@code image.derivatives.threads} platform threads, and at most
+ * {@code image.derivatives.queue-capacity} more renders may wait for one; further callers block until there is room.
+ * The upload size limit only caps the compressed size, so images of more than {@code image.derivatives.max-pixels}
+ * are rejected from their header, before they are decoded.
+ * The results are written to temp files, which the caller uploads and deletes.
+ */
+@Slf4j
+@Component
+public class ImageDerivativeService {
+    private static final float JPEG_QUALITY = 0.85f;
+
+    private final ExecutorService executor;
+    private final Semaphore slots;
+    private final long maxPixels;
+
+    public ImageDerivativeService(@Value("${image.derivatives.threads:2}") int threads,
+                                  @Value("${image.derivatives.queue-capacity:32}") int queueCapacity,
+                                  @Value("${image.derivatives.max-pixels:40000000}") long maxPixels) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "image-derivatives-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.slots = new Semaphore(threads + queueCapacity);
+        this.maxPixels = maxPixels;
+    }
+
+    /**
+     * Scales the image down to the size of every {@link ImageVariant}; images smaller than a variant are not scaled up.
+     * @return temp files by variant, empty if the file is not an image that can be decoded;
+     * fails with {@link ResourceProcessingException} if the image has too many pixels
+     */
+    public CompletableFuture<Map<ImageVariant, Path>> renderVariants(Path original) {
+        return submit(() -> {
+            BufferedImage image = read(original);
+            Map<ImageVariant, Path> variants = new EnumMap<>(ImageVariant.class);
+            if (image == null) {
+                log.debug("No derivatives for {}, it is not an image that can be decoded", original);
+                return variants;
+            }
+            try {
+                for (ImageVariant variant : ImageVariant.values()) {
+                    int longestSide = Math.max(image.getWidth(), image.getHeight());
+                    double scale = Math.min(1.0, (double) variant.getMaxSize() / longestSide);
+                    BufferedImage scaled = scale(image,
+                            Math.max(1, (int) Math.round(image.getWidth() * scale)),
+                            Math.max(1, (int) Math.round(image.getHeight() * scale)));
+                    variants.put(variant, write(scaled));
+                }
+            } catch (IOException | RuntimeException e) {
+                deleteAll(variants);
+                throw e;
+            }
+            return variants;
+        });
+    }
+
+    /**
+     * Scales the image to cover width x height and crops the center, like Cloudinary's {@code c_fill}.
+     * @return a temp file, or null if the file is not an image that can be decoded
+     */
+    public CompletableFuture<Path> renderFill(Path original, int width, int height) {
+        return submit(() -> {
+            BufferedImage image = read(original);
+            if (image == null) {
+                return null;
+            }
+            double scale = Math.max((double) width / image.getWidth(), (double) height / image.getHeight());
+            int scaledWidth = Math.max(width, (int) Math.round(image.getWidth() * scale));
+            int scaledHeight = Math.max(height, (int) Math.round(image.getHeight() * scale));
+            BufferedImage scaled = scale(image, scaledWidth, scaledHeight);
+            return write(scaled.getSubimage((scaledWidth - width) / 2, (scaledHeight - height) / 2, width, height));
+        });
+    }
+
+    // reads the dimensions from the header first, so an image that would not fit the heap is never decoded
+    private BufferedImage read(Path file) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    throw new ResourceProcessingException("The image is " + width + "x" + height
+                            + " pixels, more than the " + maxPixels + " pixels allowed");
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    public static void deleteAll(Map<ImageVariant, Path> variants) {
+        variants.values().forEach(path -> {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("Could not delete the temp file {}", path, e);
+            }
+        });
+    }
+
+    private <T> CompletableFuture<T> submit(Callable<T> task) {
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return task.call();
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                } finally {
+                    slots.release();
+                }
+            }, executor);
+        } catch (RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+    }
+
+    // halves the size in steps while it is more than twice the target, which keeps bilinear scaling sharp
+    private BufferedImage scale(BufferedImage image, int width, int height) {
+        BufferedImage current = image;
+        int currentWidth = image.getWidth();
+        int currentHeight = image.getHeight();
+        do {
+            currentWidth = currentWidth / 2 >= width ? currentWidth / 2 : width;
+            currentHeight = currentHeight / 2 >= height ? currentHeight / 2 : height;
+            current = draw(current, currentWidth, currentHeight, image.getColorModel().hasAlpha());
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    private BufferedImage draw(BufferedImage image, int width, int height, boolean alpha) {
+        BufferedImage result = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = result.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return result;
+    }
+
+    // png for images with transparency, jpeg for the rest
+    private Path write(BufferedImage image) throws IOException {
+        boolean alpha = image.getColorModel().hasAlpha();
+        Path file = Files.createTempFile("derivative-", alpha ? ".png" : ".jpg");
+        try {
+            if (alpha) {
+                ImageIO.write(image, "png", file.toFile());
+                return file;
+            }
+            ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+            try (ImageOutputStream output = ImageIO.createImageOutputStream(file.toFile())) {
+                writer.setOutput(output);
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(JPEG_QUALITY);
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            return file;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
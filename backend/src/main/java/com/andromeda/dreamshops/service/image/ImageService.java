@@ -1,27 +1,43 @@
 package com.andromeda.dreamshops.service.image;
 
 import com.andromeda.dreamshops.dto.ImageDto;
+import com.andromeda.dreamshops.dto.ImageUploadResultDto;
+import com.andromeda.dreamshops.enums.ImageVariant;
+import com.andromeda.dreamshops.enums.UploadStatus;
+import com.andromeda.dreamshops.exceptions.ImageUploadException;
 import com.andromeda.dreamshops.exceptions.ResourceNotFoundException;
 import com.andromeda.dreamshops.model.Image;
 import com.andromeda.dreamshops.model.Product;
 import com.andromeda.dreamshops.repository.ImageRepository;
+import com.andromeda.dreamshops.service.asset.AssetGarbageCollector;
 import com.andromeda.dreamshops.service.cloudprovider.ICloudProviderService;
+import com.andromeda.dreamshops.service.cloudprovider.TempUploadFile;
 import com.andromeda.dreamshops.service.product.IProductService;
+import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class ImageService implements IImageService{
     private final ImageRepository imageRepository;
     private final IProductService productService;
     private final ICloudProviderService cloudProviderService;
+    private final ImageUploadExecutor uploadExecutor;
+    private final ImageDerivativeService derivativeService;
+    private final AssetGarbageCollector assetGarbageCollector;
 
 
     @Override
@@ -30,49 +46,116 @@ public class ImageService implements IImageService{
                 .orElseThrow(()-> new ResourceNotFoundException("No image found with id: " + id));
     }
 
+    // the file and its variants are deleted from the storage in the background, once the transaction commits
     @Override
+    @Transactional
     public void deleteImageById(Long id) throws IOException {
         Image image = getImagebyId(id);
-        cloudProviderService.deleteImageByPublicId(image.getPublicId());
+        assetGarbageCollector.enqueueImage(image.getPublicId());
         imageRepository.deleteById(id);
     }
 
+    /**
+     * Uploads all files in parallel (see {@link ImageUploadExecutor}), each with its {@link ImageVariant}s,
+     * then saves their metadata with one batched insert.
+     * The upload is all or nothing: if any file fails, or the metadata can't be saved,
+     * the files that did reach the cloud are deleted again and nothing is saved.
+     *
+     * @param files the images to upload
+     * @param productId id of the product the images belong to
+     * @return the result of every file, in the order of the files
+     * @throws ImageUploadException if the images were not saved, with the result of every file
+     */
     @Override
-    public List<ImageDto> saveImages(List<MultipartFile> files, Long productId) throws IOException {
+    public List<ImageUploadResultDto> saveImages(List<MultipartFile> files, Long productId) {
         Product product = productService.getProductById(productId);
 
         if(product.getShop() == null){
             throw new ResourceNotFoundException("Cannot add images to a product that is not associated with any shop productId: " + productId);
         }
-        Long shopId = product.getShop().getId();
-
-        List<ImageDto> savedImageDto = new ArrayList<>();
+        String folder = buildProductImageFolder(product.getShop().getId());
 
-        // for every file in files
-        for (MultipartFile file : files) {
-            String folder = buildProductImageFolder(shopId);
+        // start every upload, then wait for all of them, failed or not
+        List<CompletableFuture<UploadedImage>> uploads = files.stream()
+                .map(file -> uploadExecutor.submit(() -> {
+                    try (TempUploadFile tempFile = TempUploadFile.of(file)) {
+                        return upload(tempFile.path(), folder, buildProductImagePublicId(productId, file.getOriginalFilename()));
+                    }
+                }))
+                .toList();
 
-            String publicId = buildProductImagePublicId(productId, file.getOriginalFilename());
-            Map uploadResult = cloudProviderService.uploadImage(file, folder, publicId, null);
+        List<Image> images = new ArrayList<>();
+        String[] errors = new String[files.size()];
+        for (int i = 0; i < files.size(); i++) {
+            MultipartFile file = files.get(i);
+            try {
+                UploadedImage uploaded = uploads.get(i).join();
 
-            String imageUrl = (String) uploadResult.get("secure_url");
-            String actualPublicId = (String) uploadResult.get("public_id");
+                // metadata to be saved to the database
+                Image image = new Image();
+                image.setFileName(file.getOriginalFilename());
+                image.setFileType(file.getContentType());
+                uploaded.applyTo(image);
+                image.setProduct(product);
+                images.add(image);
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                errors[i] = cause.getMessage();
+                log.warn("Upload of {} for product {} failed", file.getOriginalFilename(), productId, cause);
+            }
+        }
 
+        if (images.size() < files.size()) {
+            deleteUploaded(images);
+            throw new ImageUploadException("Upload failed, no image was saved", failedResults(files, errors, null));
+        }
 
+        List<Image> savedImages;
+        try {
+            // one batched insert for all the metadata
+            savedImages = imageRepository.saveAll(images);
+        } catch (RuntimeException e) {
+            log.warn("Could not save the images of product {}", productId, e);
+            deleteUploaded(images);
+            throw new ImageUploadException("Upload failed, no image was saved", failedResults(files, errors, e.getMessage()));
+        }
 
-            // saving metadata to database
-            Image image = new Image();
-            image.setFileName(file.getOriginalFilename());
-            image.setFileType(file.getContentType());
-            image.setImageUrl(imageUrl);
-            image.setPublicId(actualPublicId);
-            image.setProduct(product);
+        List<ImageUploadResultDto> results = new ArrayList<>();
+        for (Image image : savedImages) {
+            results.add(new ImageUploadResultDto(image.getFileName(), UploadStatus.SAVED, convertToDto(image), null));
+        }
+        return results;
+    }
 
-            Image savedImage = imageRepository.save(image);
-            savedImageDto.add(convertToDto(savedImage));
+    // compensation: removes the files of a failed request from the cloud again, in parallel
+    private void deleteUploaded(List<Image> uploaded) {
+        List<CompletableFuture<Object>> deletes = uploaded.stream()
+                .map(image -> uploadExecutor.submit(() -> {
+                    cloudProviderService.deleteImageByPublicId(image.getPublicId());
+                    deleteVariants(image.getPublicId());
+                    return null;
+                }))
+                .toList();
+        for (int i = 0; i < deletes.size(); i++) {
+            try {
+                deletes.get(i).join();
+            } catch (CompletionException e) {
+                log.error("Could not delete the orphaned upload {}", uploaded.get(i).getPublicId(), e.getCause());
+            }
+        }
+    }
 
+    private List<ImageUploadResultDto> failedResults(List<MultipartFile> files, String[] errors, String saveError) {
+        List<ImageUploadResultDto> results = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            String fileName = files.get(i).getOriginalFilename();
+            if (errors[i] != null) {
+                results.add(new ImageUploadResultDto(fileName, UploadStatus.FAILED, null, errors[i]));
+            } else {
+                results.add(new ImageUploadResultDto(fileName, UploadStatus.ROLLED_BACK, null, saveError));
+            }
         }
-        return savedImageDto;
+        return results;
     }
 
     @Override
@@ -85,22 +168,86 @@ public class ImageService implements IImageService{
 
         String folder = buildProductImageFolder(product.getShop().getId());
 
-        // Update image in cloud storage
-
-        Map updatedResult = cloudProviderService.updateImageByPublicId(
-                existingImage.getPublicId(), // old image public id
-                file,                       // new file
-                folder,                     // folder
-                null
-        );
-        String updatedImageUrl = (String) updatedResult.get("secure_url");
+        // Update image in cloud storage, the variants are rendered again from the new file
+        UploadedImage updated;
+        try (TempUploadFile tempFile = TempUploadFile.of(file)) {
+            Map updatedResult = cloudProviderService.updateImageByPublicId(
+                    existingImage.getPublicId(), // old image public id
+                    tempFile.path(),            // new file
+                    folder,                     // folder
+                    null
+            );
+            updated = uploadVariants(tempFile.path(), folder, relativePublicId(updatedResult, folder), updatedResult);
+        }
         existingImage.setFileName(file.getOriginalFilename());
         existingImage.setFileType(file.getContentType());
-        existingImage.setImageUrl(updatedImageUrl);
-        existingImage.setPublicId(updatedResult.get("public_id").toString());
+        updated.applyTo(existingImage);
         imageRepository.save(existingImage);
     }
 
+    // the url and public id of an uploaded original, and the urls of the variants that could be made
+    private record UploadedImage(String imageUrl, String publicId, Map<ImageVariant, String> variantUrls) {
+        void applyTo(Image image) {
+            image.setImageUrl(imageUrl);
+            image.setPublicId(publicId);
+            image.setThumbnailUrl(variantUrls.get(ImageVariant.THUMBNAIL));
+            image.setMediumUrl(variantUrls.get(ImageVariant.MEDIUM));
+            image.setLargeUrl(variantUrls.get(ImageVariant.LARGE));
+        }
+    }
+
+    private UploadedImage upload(Path file, String folder, String publicId) throws IOException {
+        Map uploadResult = cloudProviderService.uploadImage(file, folder, publicId, null);
+        return uploadVariants(file, folder, publicId, uploadResult);
+    }
+
+    /**
+     * Renders the variants on the derivative pool and uploads them next to the original, as {@code <public id>-<suffix>}.
+     * The variants are a nice to have: if they can't be made the image is saved without them.
+     */
+    private UploadedImage uploadVariants(Path file, String folder, String publicId, Map uploadResult) {
+        String imageUrl = (String) uploadResult.get("secure_url");
+        String actualPublicId = (String) uploadResult.get("public_id");
+        Map<ImageVariant, String> variantUrls = new EnumMap<>(ImageVariant.class);
+        Map<ImageVariant, Path> variants;
+        try {
+            variants = derivativeService.renderVariants(file).join();
+        } catch (CompletionException e) {
+            log.warn("Could not render the variants of {}", actualPublicId, e.getCause());
+            return new UploadedImage(imageUrl, actualPublicId, variantUrls);
+        }
+        try {
+            for (Map.Entry<ImageVariant, Path> variant : variants.entrySet()) {
+                Map variantResult = cloudProviderService.uploadImage(
+                        variant.getValue(), folder, publicId + "-" + variant.getKey().getSuffix(), null);
+                variantUrls.put(variant.getKey(), (String) variantResult.get("secure_url"));
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not upload the variants of {}", actualPublicId, e);
+            variantUrls.clear();
+        } finally {
+            ImageDerivativeService.deleteAll(variants);
+        }
+        return new UploadedImage(imageUrl, actualPublicId, variantUrls);
+    }
+
+    // best effort, a variant that is left behind is only wasted space
+    private void deleteVariants(String publicId) {
+        for (ImageVariant variant : ImageVariant.values()) {
+            try {
+                cloudProviderService.deleteImageByPublicId(publicId + "-" + variant.getSuffix());
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not delete the {} of image {}", variant.getSuffix(), publicId, e);
+            }
+        }
+    }
+
+    // the public id returned by an upload includes the folder
+    private String relativePublicId(Map uploadResult, String folder) {
+        String publicId = (String) uploadResult.get("public_id");
+        return publicId.startsWith(folder + "/") ? publicId.substring(folder.length() + 1) : publicId;
+    }
+
     @Override
     public List<Image> getImagesByProductId(Long productId) {
         return imageRepository.findByProductId(productId);
@@ -112,6 +259,9 @@ public class ImageService implements IImageService{
         imageDto.setId(image.getId());
         imageDto.setFileName(image.getFileName());
         imageDto.setImageUrl(image.getImageUrl());
+        imageDto.setThumbnailUrl(image.getThumbnailUrl());
+        imageDto.setMediumUrl(image.getMediumUrl());
+        imageDto.setLargeUrl(image.getLargeUrl());
         return imageDto;
     }
 
@@ -0,0 +1,51 @@
+package com.andromeda.dreamshops.service.image;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs image uploads and deletes on virtual threads.
+ * The calls to the storage provider are mostly waiting on the network, so a virtual thread per call is cheap;
+ * a semaphore caps how many run at once across all requests ({@code image.upload.max-concurrency}),
+ * so a burst of uploads can't flood the provider.
+ */
+@Component
+public class ImageUploadExecutor {
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore permits;
+
+    public ImageUploadExecutor(@Value("${image.upload.max-concurrency:8}") int maxConcurrency) {
+        this.permits = new Semaphore(maxConcurrency, true);
+    }
+
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+            try {
+                return task.call();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            } finally {
+                permits.release();
+            }
+        }, executor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,308 @@
+package com.andromeda.dreamshops.service.inventory;
+
+import com.andromeda.dreamshops.exceptions.InventorySliceExhaustedException;
+import com.andromeda.dreamshops.model.InventoryLease;
+import com.andromeda.dreamshops.repository.InventoryLeaseRepository;
+import com.andromeda.dreamshops.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory stock reservations for flash-sale products (the ones listed in {@code inventory.ledger.product-ids}).
+ * <p>
+ * Instead of every checkout updating the same product row, the node takes a slice of the stock
+ * ({@code inventory.ledger.slice-size} units) out of {@code product.inventory} into an {@link InventoryLease}
+ * and hands it out from memory with a compare-and-set. The database is only touched again when the slice
+ * runs out, so the row lock is taken once per slice instead of once per order. Refills are serialized per
+ * product by a striped lock; reservations themselves never lock.
+ * <p>
+ * Reservations are made inside the order transaction and never touch the database. When the slice runs out
+ * the order transaction is rolled back, its connection goes back to the pool, and {@link #refill} leases a new
+ * slice outside of it. So a thread waiting for the stripe lock holds no connection, and the holder needs only
+ * the one of the lease transaction: the pool does not have to be sized for the flash-sale traffic.
+ * <p>
+ * A reservation made inside a transaction is given back to the slice if that transaction rolls back.
+ * Every order item reserved from a lease records the lease id, which makes the leases crash safe:
+ * the unsold rest of a lease is its quantity minus the order items that point to it. On start-up a node
+ * returns the rest of the leases its previous run left behind, and leases whose node stopped flushing
+ * for {@code inventory.ledger.stale-after} are returned by any other node.
+ * <p>
+ * While units are leased they are not part of {@code product.inventory}. Slices that are not used for
+ * {@code inventory.ledger.idle-timeout} are closed and their rest is put back.
+ * The node id must be unique per running instance.
+ */
+@Slf4j
+@Component
+public class InventoryLedger {
+    private static final int STRIPES = 64;
+
+    private final ProductRepository productRepository;
+    private final InventoryLeaseRepository leaseRepository;
+    private final TransactionTemplate newTransaction;
+    private final Set<Long> productIds;
+    private final String nodeId;
+    private final int sliceSize;
+    private final Duration idleTimeout;
+    private final Duration staleAfter;
+
+    private final ConcurrentMap<Long, Slice> slices = new ConcurrentHashMap<>();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    public InventoryLedger(ProductRepository productRepository,
+                           InventoryLeaseRepository leaseRepository,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${inventory.ledger.product-ids:}") Set<Long> productIds,
+                           @Value("${inventory.ledger.node-id:local}") String nodeId,
+                           @Value("${inventory.ledger.slice-size:200}") int sliceSize,
+                           @Value("${inventory.ledger.idle-timeout:30s}") Duration idleTimeout,
+                           @Value("${inventory.ledger.stale-after:5m}") Duration staleAfter) {
+        this.productRepository = productRepository;
+        this.leaseRepository = leaseRepository;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.productIds = Set.copyOf(productIds);
+        this.nodeId = nodeId;
+        this.sliceSize = sliceSize;
+        this.idleTimeout = idleTimeout;
+        this.staleAfter = staleAfter;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public boolean manages(Long productId) {
+        return productIds.contains(productId);
+    }
+
+    /**
+     * Reserves {@code quantity} units of a flash-sale product from this node's slice, without touching the database.
+     * @return the id of the lease the units were reserved from
+     * @throws InventorySliceExhaustedException if the slice can't cover it; the caller rolls its transaction back,
+     * calls {@link #refill} and tries again
+     */
+    public Long reserve(Long productId, int quantity) {
+        Slice slice = slices.get(productId);
+        if (slice == null || !slice.tryTake(quantity)) {
+            throw new InventorySliceExhaustedException(productId, quantity);
+        }
+        releaseOnRollback(slice, quantity);
+        return slice.leaseId;
+    }
+
+    /**
+     * Makes sure this node's slice of the product holds at least {@code quantity} units, leasing a new slice
+     * from the database when it does not. Must be called outside of a transaction, see the class comment.
+     * @return false if the product does not have that many units left
+     */
+    public boolean refill(Long productId, int quantity) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Inventory slices must be leased outside of a transaction");
+        }
+        ReentrantLock lock = stripeOf(productId);
+        lock.lock();
+        try {
+            // another thread may have refilled while we were waiting
+            Slice slice = slices.get(productId);
+            if (slice != null && !slice.closed && slice.remaining.get() >= quantity) {
+                return true;
+            }
+            if (slice != null) {
+                close(slice);
+            }
+            slice = lease(productId, Math.max(sliceSize, quantity));
+            if (slice == null) {
+                return false;
+            }
+            slices.put(productId, slice);
+            return slice.remaining.get() >= quantity;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseOnRollback(Slice slice, int quantity) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    release(slice, quantity);
+                }
+            }
+        });
+    }
+
+    // gives units back to the slice, or straight to the product once the slice has been closed
+    private void release(Slice slice, int quantity) {
+        ReentrantLock lock = stripeOf(slice.productId);
+        lock.lock();
+        try {
+            if (slice.reconciled) {
+                // the node that reconciled the lease only counted committed orders, so these units are back already
+                return;
+            }
+            if (!slice.closed) {
+                slice.remaining.addAndGet(quantity);
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        newTransaction.executeWithoutResult(tx -> restock(slice.productId, quantity));
+    }
+
+    private Slice lease(Long productId, int quantity) {
+        InventoryLease lease = newTransaction.execute(tx -> {
+            int taken = productRepository.takeInventory(productId, quantity);
+            return taken == 0 ? null : leaseRepository.save(new InventoryLease(productId, nodeId, taken));
+        });
+        if (lease == null) {
+            return null;
+        }
+        log.debug("Leased {} units of product {} (lease {})", lease.getQuantity(), productId, lease.getId());
+        return new Slice(lease.getId(), productId, lease.getQuantity());
+    }
+
+    // must hold the product's stripe lock
+    private void close(Slice slice) {
+        slice.closed = true;
+        slices.remove(slice.productId, slice);
+        int rest = slice.remaining.getAndSet(0);
+        newTransaction.executeWithoutResult(tx -> {
+            restock(slice.productId, rest);
+            leaseRepository.deleteById(slice.leaseId);
+        });
+        log.debug("Closed lease {} of product {}, {} units put back", slice.leaseId, slice.productId, rest);
+    }
+
+    /**
+     * Write-behind: records how much of every open slice is used, closes idle slices
+     * and returns the leases of nodes that stopped flushing.
+     */
+    @Scheduled(fixedDelayString = "${inventory.ledger.flush-interval-ms:1000}")
+    public void flush() {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        long idleBefore = System.nanoTime() - idleTimeout.toNanos();
+        for (Slice slice : slices.values()) {
+            ReentrantLock lock = stripeOf(slice.productId);
+            lock.lock();
+            try {
+                if (slice.closed) {
+                    continue;
+                }
+                if (slice.lastUsedNanos - idleBefore < 0) {
+                    close(slice);
+                    continue;
+                }
+                int consumed = slice.quantity - slice.remaining.get();
+                Integer flushed = newTransaction.execute(tx -> leaseRepository.flushConsumed(slice.leaseId, consumed, now));
+                if (flushed == null || flushed == 0) {
+                    // another node took this lease for a dead one and already returned its rest
+                    log.warn("Lease {} of product {} was reconciled by another node, dropping it", slice.leaseId, slice.productId);
+                    slice.closed = true;
+                    slice.reconciled = true;
+                    slice.remaining.set(0);
+                    slices.remove(slice.productId, slice);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Could not flush lease {} of product {}", slice.leaseId, slice.productId, e);
+            } finally {
+                lock.unlock();
+            }
+        }
+        reconcile(leaseRepository.findByFlushedAtBefore(now.minus(staleAfter)), now.minus(staleAfter));
+    }
+
+    // returns what the previous run of this node had leased but not sold
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOwnLeases() {
+        reconcile(leaseRepository.findByNodeId(nodeId), LocalDateTime.now());
+    }
+
+    private void reconcile(Iterable<InventoryLease> leases, LocalDateTime staleBefore) {
+        for (InventoryLease lease : leases) {
+            Slice open = slices.get(lease.getProductId());
+            if (open != null && open.leaseId == lease.getId()) {
+                continue;
+            }
+            try {
+                newTransaction.executeWithoutResult(tx -> {
+                    if (leaseRepository.deleteIfStale(lease.getId(), staleBefore) == 0) {
+                        return;
+                    }
+                    int rest = lease.getQuantity() - productRepository.countUnitsSoldFromLease(lease.getId());
+                    restock(lease.getProductId(), rest);
+                    log.info("Reconciled lease {} of node {}: {} unsold units of product {} put back",
+                            lease.getId(), lease.getNodeId(), rest, lease.getProductId());
+                });
+            } catch (RuntimeException e) {
+                log.warn("Could not reconcile lease {}", lease.getId(), e);
+            }
+        }
+    }
+
+    private void restock(Long productId, int quantity) {
+        if (quantity > 0) {
+            productRepository.restockInventory(new TreeMap<>(Map.of(productId, quantity)));
+        }
+    }
+
+    private ReentrantLock stripeOf(Long productId) {
+        return stripes[Math.floorMod(productId.hashCode(), STRIPES)];
+    }
+
+    private static final class Slice {
+        final long leaseId;
+        final Long productId;
+        final int quantity;
+        final AtomicInteger remaining;
+        volatile boolean closed;
+        volatile boolean reconciled;
+        volatile long lastUsedNanos = System.nanoTime();
+
+        Slice(long leaseId, Long productId, int quantity) {
+            this.leaseId = leaseId;
+            this.productId = productId;
+            this.quantity = quantity;
+            this.remaining = new AtomicInteger(quantity);
+        }
+
+        boolean tryTake(int units) {
+            while (!closed) {
+                int left = remaining.get();
+                if (left < units) {
+                    return false;
+                }
+                if (remaining.compareAndSet(left, left - units)) {
+                    lastUsedNanos = System.nanoTime();
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
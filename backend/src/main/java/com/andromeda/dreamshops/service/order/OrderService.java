@@ -2,43 +2,78 @@ package com.andromeda.dreamshops.service.order;
 
 import com.andromeda.dreamshops.dto.OrderDto;
 import com.andromeda.dreamshops.enums.OrderStatus;
+import com.andromeda.dreamshops.exceptions.ConcurrentUpdateException;
 import com.andromeda.dreamshops.exceptions.GeneralException;
+import com.andromeda.dreamshops.exceptions.InsufficientStockException;
+import com.andromeda.dreamshops.exceptions.InventorySliceExhaustedException;
 import com.andromeda.dreamshops.exceptions.ResourceNotFoundException;
+import com.andromeda.dreamshops.mapper.OrderMapper;
 import com.andromeda.dreamshops.model.*;
 import com.andromeda.dreamshops.repository.*;
 import com.andromeda.dreamshops.service.cart.CartService;
+import com.andromeda.dreamshops.service.inventory.InventoryLedger;
+import com.andromeda.dreamshops.service.retry.OptimisticRetryExecutor;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 
 @Service
 @RequiredArgsConstructor
 public class OrderService implements IOrderService{
+    private static final int MAX_SLICE_REFILLS = 5;
+
     private final OrderRepository orderRepository;
     private final ProductRepository productRepository;
     private final CartService cartService;
-    private final ModelMapper modelMapper;
+    private final OrderMapper orderMapper;
+    private final InventoryLedger inventoryLedger;
+    private final OptimisticRetryExecutor retryExecutor;
 
     /**
      * The `placeOrder` method is responsible for creating a new order based on the user's cart.
-     * It retrieves the cart for the given user, creates an order, and then creates order items from the cart items.
+     * It retrieves the cart for the given user, creates an order, reserves the stock of every cart item
+     * and then creates order items from the cart items.
      * Finally, it saves the order and clears the cart.
+     * Cart changes still waiting in the cart cache are written first.
+     * All of it runs in one transaction, which is retried if the cart was changed concurrently.
+     * When the in-memory slice of a flash-sale product runs out, the transaction is rolled back first
+     * and the slice refilled outside of it, so no connection is held while waiting for the refill.
      *
      * @param userId The ID of the user placing the order.
      * @return The saved Order object.
+     * @throws InsufficientStockException if any product does not have enough stock, nothing is reserved then
      */
-    @Transactional
     @Override
     public Order placeOrder(Long userId) {
+        cartService.flushCartOfUser(userId);
+        for (int refills = 0; ; refills++) {
+            try {
+                return retryExecutor.execute("order.place", () -> doPlaceOrder(userId));
+            } catch (InventorySliceExhaustedException e) {
+                if (refills >= MAX_SLICE_REFILLS) {
+                    throw new ConcurrentUpdateException("The product is in high demand right now, please try again.", e);
+                }
+                if (!inventoryLedger.refill(e.getProductId(), e.getQuantity())) {
+                    throw new InsufficientStockException("Not enough stock for product(s) with id: " + List.of(e.getProductId())
+                            + ". The order was not placed.");
+                }
+            }
+        }
+    }
+
+    private Order doPlaceOrder(Long userId) {
         Cart cart = cartService.getCartByUserId(userId);
         Order order = createOrder(cart);
-        List<OrderItem> orderItems = createOrderItems(order, cart);
+        Map<Long, Long> leaseIds = reserveInventory(cart);
+        List<OrderItem> orderItems = createOrderItems(order, cart, leaseIds);
         order.setOrderItems(new HashSet<>(orderItems));
         order.setTotalAmount(calculateTotalAmount(orderItems));
         Order savedOrder = orderRepository.save(order);
@@ -67,34 +102,81 @@ public class OrderService implements IOrderService{
     }
 
 
+    /**
+     * The `reserveInventory` method takes the ordered quantities out of stock.
+     * Instead of reading, changing and saving every product (which loses updates when two checkouts
+     * buy the same product at the same time), every line becomes a conditional
+     * `inventory = inventory - quantity where inventory >= quantity` update, and all lines of the order
+     * are sent to the database as one batch.
+     * Flash-sale products are reserved from the in-memory `InventoryLedger` instead; if its slice
+     * runs out, `InventorySliceExhaustedException` rolls the order back to `placeOrder`, which refills it.
+     * If any product is short the method throws, and the transaction of `placeOrder` rolls back
+     * the lines that were already reserved.
+     *
+     * @return the inventory lease ids of the products reserved from the ledger, by product id
+     */
+    private Map<Long, Long> reserveInventory(Cart cart) {
+        SortedMap<Long, Integer> quantities = quantitiesByProductId(cart.getItems().stream()
+                .map(cartItem -> new ProductQuantity(cartItem.getProductId(), cartItem.getQuantity()))
+                .toList());
+        Map<Long, Long> leaseIds = new HashMap<>();
+        SortedMap<Long, Integer> fromDatabase = new TreeMap<>();
+        quantities.forEach((productId, quantity) -> {
+            if (!inventoryLedger.manages(productId)) {
+                fromDatabase.put(productId, quantity);
+                return;
+            }
+            leaseIds.put(productId, inventoryLedger.reserve(productId, quantity));
+        });
+        // a ledger slice that runs out throws, so only the products the ledger does not manage can be out of stock here
+        List<Long> outOfStock = fromDatabase.isEmpty() ? List.of() : productRepository.reserveInventory(fromDatabase);
+        if (!outOfStock.isEmpty()) {
+            throw new InsufficientStockException("Not enough stock for product(s) with id: " + outOfStock
+                    + ". The order was not placed.");
+        }
+        return leaseIds;
+    }
+
     /**
      * The `createOrderItems` method constructs a list of `OrderItem` objects from the items in a given `Cart` for a specific `Order`. Here’s a step-by-step explanation:
      * 1. It takes an `Order` and a `Cart` as parameters.
      * 2. It retrieves the list of items from the cart.
      * 3. For each cart item:
      *    - Gets the associated `Product`.
-     *    - Decreases the product's inventory by the quantity in the cart item.
-     *    - Saves the updated product back to the database using `productRepository.save(product)`.
-     *    - Creates a new `OrderItem` object, associating it with the order, product, quantity, and unit price.
+     *    - Creates a new `OrderItem` object, associating it with the order, product, quantity, and unit price,
+     *      and with the inventory lease the stock came from, if any.
      * 4. Collects all the created `OrderItem` objects into a list and returns it.
-     * This method ensures that product inventory is updated and that each cart item is converted into an order item for the order.
+     * The stock of the products has already been reserved by `reserveInventory`.
      */
 
-    private List<OrderItem> createOrderItems(Order order, Cart cart){
+    private List<OrderItem> createOrderItems(Order order, Cart cart, Map<Long, Long> leaseIds){
         return cart.getItems()
                 .stream()
                 .map(cartItem -> {
-                    Product product = cartItem.getProduct();
-                    product.setInventory(product.getInventory() - cartItem.getQuantity());
-                    productRepository.save(product);
-                    return new OrderItem(
+                    OrderItem orderItem = new OrderItem(
                             order,
-                            product,
+                            cartItem.getProduct(),
                             cartItem.getQuantity(),
                             cartItem.getUnitPrice());
+                    orderItem.setInventoryLeaseId(leaseIds.get(cartItem.getProductId()));
+                    return orderItem;
                 }).toList();
     }
 
+    private record ProductQuantity(Long productId, int quantity) {}
+
+    // one entry per product, sorted by id so concurrent orders lock the product rows in the same order
+    private SortedMap<Long, Integer> quantitiesByProductId(List<ProductQuantity> lines) {
+        SortedMap<Long, Integer> quantities = new TreeMap<>();
+        for (ProductQuantity line : lines) {
+            if (line.quantity() <= 0) {
+                throw new GeneralException("Invalid quantity " + line.quantity() + " for product with id: " + line.productId());
+            }
+            quantities.merge(line.productId(), line.quantity(), Integer::sum);
+        }
+        return quantities;
+    }
+
 
 
 
@@ -135,7 +217,7 @@ public class OrderService implements IOrderService{
 
     @Override
     public OrderDto convertToDto(Order order) {
-        return modelMapper.map(order, OrderDto.class);
+        return orderMapper.toDto(order);
     }
 
     // order status flow - PENDING -> CONFIRMED -> PROCESSING -> SHIPPED -> IN_TRANSIT -> DELIVERED
@@ -145,6 +227,10 @@ public class OrderService implements IOrderService{
 
     @Override
     public OrderDto updateOrderStatus(Long orderId, OrderStatus status) {
+        return retryExecutor.execute("order.updateStatus", () -> doUpdateOrderStatus(orderId, status));
+    }
+
+    private OrderDto doUpdateOrderStatus(Long orderId, OrderStatus status) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Order not found with id: " + orderId));
         OrderStatus currentStatus = order.getOrderStatus();
@@ -163,6 +249,10 @@ public class OrderService implements IOrderService{
 
     @Override
     public OrderDto confirmOrder(Long orderId) {
+        return retryExecutor.execute("order.confirm", () -> doConfirmOrder(orderId));
+    }
+
+    private OrderDto doConfirmOrder(Long orderId) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Order not found with id: " + orderId));
 
@@ -173,8 +263,13 @@ public class OrderService implements IOrderService{
         return convertToDto(orderRepository.save(order));
     }
 
+    // a confirm racing a cancel now fails one of them, so stock is never put back for a confirmed order
     @Override
     public OrderDto cancelOrder(Long orderId) {
+        return retryExecutor.execute("order.cancel", () -> doCancelOrder(orderId));
+    }
+
+    private OrderDto doCancelOrder(Long orderId) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Order not found with id: " + orderId));
         // basically we need to check if the order is already cancelled or completed
@@ -191,11 +286,11 @@ public class OrderService implements IOrderService{
         return convertToDto(orderRepository.save(order));
     }
 
+    // puts the stock of all lines back with one batch of `inventory = inventory + quantity` updates
     private void restockInventory(Order order) {
-        for (OrderItem item : order.getOrderItems()) {
-            Product product = item.getProduct();
-            product.setInventory(product.getInventory() + item.getQuantity());
-            productRepository.save(product);
-        }
+        SortedMap<Long, Integer> quantities = quantitiesByProductId(order.getOrderItems().stream()
+                .map(item -> new ProductQuantity(item.getProduct().getId(), item.getQuantity()))
+                .toList());
+        productRepository.restockInventory(quantities);
     }
 }
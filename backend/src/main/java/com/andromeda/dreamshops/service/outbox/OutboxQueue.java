@@ -0,0 +1,92 @@
+package com.andromeda.dreamshops.service.outbox;
+
+import com.andromeda.dreamshops.model.OutboxEntry;
+import com.andromeda.dreamshops.repository.OutboxRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Claiming and retrying of the entries of an outbox table, shared by the processors of the outboxes.
+ * <p>
+ * Due entries are claimed with a conditional update that moves them {@code claimTimeout} into the future,
+ * so several nodes can process the same table; an entry whose node dies while processing it is due again
+ * once the claim runs out. A failed entry is due again after an exponential backoff from {@code initialBackoff}
+ * up to {@code maxBackoff}, and given up after {@code maxAttempts}: its {@code nextAttemptAt} is then null.
+ */
+@Slf4j
+public class OutboxQueue<T extends OutboxEntry> {
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final OutboxRepository<T> repository;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Duration claimTimeout;
+
+    public OutboxQueue(OutboxRepository<T> repository,
+                       TransactionTemplate transactionTemplate,
+                       int maxAttempts,
+                       Duration initialBackoff,
+                       Duration maxBackoff,
+                       Duration claimTimeout) {
+        this.repository = repository;
+        this.transactionTemplate = transactionTemplate;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.claimTimeout = claimTimeout;
+    }
+
+    public List<T> claimDue(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime claimedUntil = now.plus(claimTimeout);
+        return transactionTemplate.execute(status -> {
+            List<T> claimed = new ArrayList<>();
+            for (T entry : repository.findByNextAttemptAtLessThanEqualOrderByIdAsc(now, PageRequest.of(0, limit))) {
+                if (repository.claim(entry.getId(), now, claimedUntil) == 1) {
+                    claimed.add(entry);
+                }
+            }
+            return claimed;
+        });
+    }
+
+    /**
+     * Records a failed attempt of the entry.
+     * @return when the entry is tried again, or null if its attempts are used up
+     */
+    public LocalDateTime recordFailure(T entry, Exception e) {
+        int attempts = entry.getAttempts() + 1;
+        LocalDateTime nextAttemptAt = null;
+        if (attempts < maxAttempts) {
+            Duration backoff = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+            nextAttemptAt = LocalDateTime.now().plus(backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff);
+        }
+        String error = String.valueOf(e.getMessage());
+        LocalDateTime next = nextAttemptAt;
+        try {
+            transactionTemplate.executeWithoutResult(status -> repository.recordFailure(entry.getId(), attempts, next,
+                    error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error));
+        } catch (RuntimeException ex) {
+            // the claim runs out and the entry is tried again
+            log.warn("Could not record the failure of outbox entry {}", entry.getId(), ex);
+        }
+        return nextAttemptAt;
+    }
+
+    public void remove(List<Long> ids) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> repository.deleteAllByIdInBatch(ids));
+        } catch (RuntimeException e) {
+            // the claims run out and these are processed a second time
+            log.error("Could not remove the processed outbox entries {}", ids, e);
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package com.andromeda.dreamshops.service.product;
 
 import com.andromeda.dreamshops.dto.ProductDto;
+import com.andromeda.dreamshops.dto.ProductPageDto;
 import com.andromeda.dreamshops.model.Product;
 import com.andromeda.dreamshops.request.AddProductRequest;
+import com.andromeda.dreamshops.request.CursorPageRequest;
 import com.andromeda.dreamshops.request.ProductUpdateRequest;
 
 import java.util.List;
@@ -13,39 +15,42 @@ public interface IProductService {
     Product getProductById(Long id);
     void deleteProductById(Long id, Long shopId);
     Product updateProduct(ProductUpdateRequest product, Long productId, Long shopId);
-    List<Product> getAllProducts();
-    List<Product> getAllProductsByCategory(String category);
-    List<Product> getProductsByBrand(String brand);
-    List<Product> getProductsByName(String name);
-    List<Product> getProductByBrandAndName(String brand, String name);
-    List<Product> getProductByCategoryAndBrand(String category, String brand);
+    List<Product> getAllProducts(CursorPageRequest page);
+    List<Product> getAllProductsByCategory(String category, CursorPageRequest page);
+    List<Product> getProductsByBrand(String brand, CursorPageRequest page);
+    List<Product> getProductsByName(String name, CursorPageRequest page);
+    List<Product> getProductByBrandAndName(String brand, String name, CursorPageRequest page);
+    List<Product> getProductByCategoryAndBrand(String category, String brand, CursorPageRequest page);
     Long countProductByBrandAndName(String brand, String name);
 
 
     List<ProductDto> getConvertedProducts(List<Product> products);
 
+    // builds one page out of a keyset query result (fetched with page.fetchLimit())
+    ProductPageDto getConvertedProductPage(List<Product> products, CursorPageRequest page);
+
     ProductDto convertToDto(Product product);
 
-    List<Product> getAllProductsByParentCategory(String parentCategoryName);
+    List<Product> getAllProductsByParentCategory(String parentCategoryName, CursorPageRequest page);
 
     // shop related product methods
     // MacBook Pro 14 in shop with id 1
     Product getProductByShopIdAndProductId(Long shopId, Long productId);
 
     // All products in shop with id 1
-    List<Product> getAllProductsByShopId(Long shopId);
+    List<Product> getAllProductsByShopId(Long shopId, CursorPageRequest page);
 
     // All products in Rio Electronics
-    List<Product> getAllProductsByShopName(String shopName);
+    List<Product> getAllProductsByShopName(String shopName, CursorPageRequest page);
 
     // All laptops in Rio Electronics
-    List<Product> getAllProductsByShopAndCategory(String shopName, String categoryName);
+    List<Product> getAllProductsByShopAndCategory(String shopName, String categoryName, CursorPageRequest page);
 
     // All Apple products in Rio Electronics
-    List<Product> getAllProductsByShopAndBrand(String shopName, String brand);
+    List<Product> getAllProductsByShopAndBrand(String shopName, String brand, CursorPageRequest page);
 
     // All Apple laptops in Rio Electronics
-    List<Product> getAllProductsByShopBrandAndCategory(String shopName, String brand, String categoryName);
+    List<Product> getAllProductsByShopBrandAndCategory(String shopName, String brand, String categoryName, CursorPageRequest page);
 
     // MacBook Pro 14 in Rio Electronics
     Product getProductByShopNameAndProductName(String shopName, String productName);
@@ -3,14 +3,18 @@ package com.andromeda.dreamshops.service.product;
 import com.andromeda.dreamshops.dto.CategoryDto;
 import com.andromeda.dreamshops.dto.ImageDto;
 import com.andromeda.dreamshops.dto.ProductDto;
+import com.andromeda.dreamshops.dto.ProductPageDto;
 import com.andromeda.dreamshops.exceptions.AlreadyExistsException;
 import com.andromeda.dreamshops.exceptions.ResourceNotFoundException;
+import com.andromeda.dreamshops.mapper.ProductMapper;
 import com.andromeda.dreamshops.model.*;
 import com.andromeda.dreamshops.repository.*;
 import com.andromeda.dreamshops.request.*;
+import com.andromeda.dreamshops.service.asset.AssetGarbageCollector;
 import com.andromeda.dreamshops.service.category.ICategoryService;
+import com.andromeda.dreamshops.service.retry.OptimisticRetryExecutor;
+import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -23,9 +27,11 @@ public class ProductService implements IProductService{
     private final ProductRepository productRepository;
     private final CategoryRepository categoryRepository;
     private final ImageRepository imageRepository;
-    private final ModelMapper modelMapper;
+    private final ProductMapper productMapper;
     private final ShopRepository shopRepository;
     private final ICategoryService categoryService;
+    private final OptimisticRetryExecutor retryExecutor;
+    private final AssetGarbageCollector assetGarbageCollector;
     /**
      * @param  request request to add product
      * @param shopId id of the shop
@@ -86,9 +92,14 @@ public class ProductService implements IProductService{
      * @param shopId id of the shop
      */
     @Override
+    @Transactional
     public void deleteProductById(Long id, Long shopId) {
         productRepository.findByIdAndShopId(id, shopId)
-                .ifPresentOrElse(productRepository::delete,
+                .ifPresentOrElse(product -> {
+                            // the images go with the product, their files are deleted in the background
+                            product.getImages().forEach(image -> assetGarbageCollector.enqueueImage(image.getPublicId()));
+                            productRepository.delete(product);
+                        },
                         ()-> {throw new ResourceNotFoundException("Product not found with id: " + id + " in shop with id: " + shopId);});
     }
 
@@ -99,10 +110,10 @@ public class ProductService implements IProductService{
      */
     @Override
     public Product updateProduct(ProductUpdateRequest request, Long productId, Long shopId) {
-        return productRepository.findByIdAndShopId(productId, shopId)
+        return retryExecutor.execute("product.update", () -> productRepository.findByIdAndShopId(productId, shopId)
                 .map(existingProduct -> updateExistingProduct(existingProduct, request))
-                .map(productRepository::save)
-                .orElseThrow(()-> new ResourceNotFoundException("Product not Found!"));
+                .map(productRepository::saveAndFlush)
+                .orElseThrow(()-> new ResourceNotFoundException("Product not Found!")));
     }
 
     private Product updateExistingProduct(Product existingProduct,
@@ -121,62 +132,68 @@ public class ProductService implements IProductService{
     }
 
     /**
-     * @return all products
+     * @param page cursor and size of the requested page
+     * @return one page of all products
      */
     @Override
-    public List<Product> getAllProducts() {
-        return productRepository.findAll();
+    public List<Product> getAllProducts(CursorPageRequest page) {
+        return productRepository.findByIdGreaterThanOrderByIdAsc(page.cursorOrStart(), page.fetchLimit());
     }
 
     /**
      * @param category name of the category of which products we want
+     * @param page cursor and size of the requested page
      * @return a list of the products
      */
     @Override
-    public List<Product> getAllProductsByCategory(String category) {
-        return productRepository.findByCategoryName(category);
+    public List<Product> getAllProductsByCategory(String category, CursorPageRequest page) {
+        return productRepository.findByCategoryNameAndIdGreaterThanOrderByIdAsc(category, page.cursorOrStart(), page.fetchLimit());
     }
 
     /**
      * @param brand of the products to be fetched
+     * @param page cursor and size of the requested page
      * @return list of products
      */
     @Override
-    public List<Product> getProductsByBrand(String brand) {
-        return productRepository.findByBrand(brand);
+    public List<Product> getProductsByBrand(String brand, CursorPageRequest page) {
+        return productRepository.findByBrandAndIdGreaterThanOrderByIdAsc(brand, page.cursorOrStart(), page.fetchLimit());
     }
 
     /**
      * @param name of the products to be fetched
+     * @param page cursor and size of the requested page
      * @return list of products
      */
     @Override
-    public List<Product> getProductsByName(String name) {
-        return productRepository.findByName(name);
+    public List<Product> getProductsByName(String name, CursorPageRequest page) {
+        return productRepository.findByNameAndIdGreaterThanOrderByIdAsc(name, page.cursorOrStart(), page.fetchLimit());
     }
 
     /**
      * @param brand of the products
      * @param name of the products
+     * @param page cursor and size of the requested page
      * @return list of products
      */
     // Ex. get all products of brand Samsung and name Galaxy S21
     // as in all products of brand Samsung having name Galaxy S21
     // sold by all the shops in the platform
     @Override
-    public List<Product> getProductByBrandAndName(String brand, String name) {
-        return productRepository.findByBrandAndName(brand, name);
+    public List<Product> getProductByBrandAndName(String brand, String name, CursorPageRequest page) {
+        return productRepository.findByBrandAndNameAndIdGreaterThanOrderByIdAsc(brand, name, page.cursorOrStart(), page.fetchLimit());
     }
 
     /**
      * @param category of the products
      * @param brand of the products
+     * @param page cursor and size of the requested page
      * @return list of products
      */
     // Ex. get all products of category Phones and brand Apple
     @Override
-    public List<Product> getProductByCategoryAndBrand(String category, String brand) {
-        return productRepository.findByCategoryNameAndBrand(category, brand);
+    public List<Product> getProductByCategoryAndBrand(String category, String brand, CursorPageRequest page) {
+        return productRepository.findByCategoryNameAndBrandAndIdGreaterThanOrderByIdAsc(category, brand, page.cursorOrStart(), page.fetchLimit());
     }
 
     /**
@@ -192,14 +209,28 @@ public class ProductService implements IProductService{
 
     @Override
     public List<ProductDto> getConvertedProducts(List<Product> products) {
-        return products.stream()
-                .map(this::convertToDto)
-                .toList();
+        return productMapper.toDtoList(products);
+    }
+
+    // the query asked for one product more than the page size,
+    // if it came back the page is not the last one and the cursor points at the last product shown
+    @Override
+    public ProductPageDto getConvertedProductPage(List<Product> products, CursorPageRequest page) {
+        int pageSize = page.pageSize();
+        boolean hasMore = products.size() > pageSize;
+        List<Product> content = hasMore ? products.subList(0, pageSize) : products;
+
+        ProductPageDto productPage = new ProductPageDto();
+        productPage.setProducts(getConvertedProducts(content));
+        productPage.setSize(content.size());
+        productPage.setHasMore(hasMore);
+        productPage.setNextCursor(hasMore ? content.getLast().getId() : null);
+        return productPage;
     }
 
     @Override
     public ProductDto convertToDto(Product product) {
-        return modelMapper.map(product, ProductDto.class);
+        return productMapper.toDto(product);
     }
 
     // if i want to get all products under Electronics category
@@ -210,12 +241,12 @@ public class ProductService implements IProductService{
     // products necessarily cannot be fetched under electronics
     // Alternatively we can get all the sub categories of electronics
     // then fetch all products under those sub-categories
+    // the sub-category ids come from the in-memory category tree, so this is a single
+    // keyset paginated query on (category_id, id) for Electronics itself and everything below it
     @Override
-    public List<Product> getAllProductsByParentCategory(String parentCategoryName) {
-        List<Category> subCategories = categoryService.getAllSubCategoriesByParentName(parentCategoryName);
-        return subCategories.stream()
-                .flatMap(category -> productRepository.findByCategoryName(category.getName()).stream())
-                .toList();
+    public List<Product> getAllProductsByParentCategory(String parentCategoryName, CursorPageRequest page) {
+        List<Long> categoryIds = categoryService.getCategoryIdsInSubtree(parentCategoryName);
+        return productRepository.findByCategoryIdInAndIdGreaterThanOrderByIdAsc(categoryIds, page.cursorOrStart(), page.fetchLimit());
     }
 
     // shop related product methods
@@ -227,28 +258,28 @@ public class ProductService implements IProductService{
     }
 
     @Override
-    public List<Product> getAllProductsByShopId(Long shopId) {
-        return productRepository.findByShopId(shopId);
+    public List<Product> getAllProductsByShopId(Long shopId, CursorPageRequest page) {
+        return productRepository.findByShopIdAndIdGreaterThanOrderByIdAsc(shopId, page.cursorOrStart(), page.fetchLimit());
     }
 
     @Override
-    public List<Product> getAllProductsByShopName(String shopName) {
-        return productRepository.findByShopName(shopName);
+    public List<Product> getAllProductsByShopName(String shopName, CursorPageRequest page) {
+        return productRepository.findByShopNameAndIdGreaterThanOrderByIdAsc(shopName, page.cursorOrStart(), page.fetchLimit());
     }
 
     @Override
-    public List<Product> getAllProductsByShopAndCategory(String shopName, String categoryName) {
-        return productRepository.findByShopNameAndCategoryName(shopName, categoryName);
+    public List<Product> getAllProductsByShopAndCategory(String shopName, String categoryName, CursorPageRequest page) {
+        return productRepository.findByShopNameAndCategoryNameAndIdGreaterThanOrderByIdAsc(shopName, categoryName, page.cursorOrStart(), page.fetchLimit());
     }
 
     @Override
-    public List<Product> getAllProductsByShopAndBrand(String shopName, String brand) {
-        return productRepository.findByShopNameAndBrand(shopName, brand);
+    public List<Product> getAllProductsByShopAndBrand(String shopName, String brand, CursorPageRequest page) {
+        return productRepository.findByShopNameAndBrandAndIdGreaterThanOrderByIdAsc(shopName, brand, page.cursorOrStart(), page.fetchLimit());
     }
 
     @Override
-    public List<Product> getAllProductsByShopBrandAndCategory(String shopName, String brand, String categoryName) {
-        return productRepository.findByShopNameAndBrandAndCategoryName(shopName, brand, categoryName);
+    public List<Product> getAllProductsByShopBrandAndCategory(String shopName, String brand, String categoryName, CursorPageRequest page) {
+        return productRepository.findByShopNameAndBrandAndCategoryNameAndIdGreaterThanOrderByIdAsc(shopName, brand, categoryName, page.cursorOrStart(), page.fetchLimit());
     }
 
     @Override
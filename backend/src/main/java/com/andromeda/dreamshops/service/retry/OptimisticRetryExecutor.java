@@ -0,0 +1,89 @@
+package com.andromeda.dreamshops.service.retry;
+
+import com.andromeda.dreamshops.exceptions.ConcurrentUpdateException;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Runs a read-modify-write of versioned entities in its own transaction, and runs it again
+ * (re-reading everything) when another request updated the same rows first.
+ * <p>
+ * Attempts are spaced by an exponential backoff with full jitter. Every conflict is counted in the
+ * {@code optimistic.lock.conflicts} metric, and once {@code retry.optimistic-lock.max-attempts} are used up
+ * a {@link ConcurrentUpdateException} is thrown, which is answered with 409 Conflict.
+ * <p>
+ * Called from inside an already running transaction there is nothing to retry (the failed transaction
+ * is rolled back as a whole), so the action then runs once and a conflict is only translated.
+ */
+@Slf4j
+@Component
+public class OptimisticRetryExecutor {
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+
+    public OptimisticRetryExecutor(PlatformTransactionManager transactionManager,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${retry.optimistic-lock.max-attempts:4}") int maxAttempts,
+                                   @Value("${retry.optimistic-lock.initial-backoff:10ms}") Duration initialBackoff,
+                                   @Value("${retry.optimistic-lock.max-backoff:200ms}") Duration maxBackoff) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    /**
+     * @param operation name of the operation, used as the {@code operation} tag of the metrics
+     * @param action the read-modify-write; it must load the entities itself so every attempt sees fresh rows
+     * @return the result of the first attempt that committed
+     * @throws ConcurrentUpdateException if every attempt lost against a concurrent update
+     */
+    public <T> T execute(String operation, Supplier<T> action) {
+        int attempts = TransactionSynchronizationManager.isActualTransactionActive() ? 1 : maxAttempts;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> action.get());
+            } catch (OptimisticLockingFailureException e) {
+                meterRegistry.counter("optimistic.lock.conflicts", "operation", operation).increment();
+                if (attempt >= attempts) {
+                    meterRegistry.counter("optimistic.lock.exhausted", "operation", operation).increment();
+                    throw new ConcurrentUpdateException(
+                            "The resource was changed by another request at the same time, please try again.", e);
+                }
+                log.debug("Optimistic lock conflict in {} (attempt {} of {})", operation, attempt, attempts);
+                backoff(attempt);
+            }
+        }
+    }
+
+    public void run(String operation, Runnable action) {
+        execute(operation, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    private void backoff(int attempt) {
+        long cap = Math.min(maxBackoff.toMillis(), initialBackoff.toMillis() << Math.min(attempt - 1, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(cap + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConcurrentUpdateException("Interrupted while retrying a concurrent update.", e);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.andromeda.dreamshops.service.shop;
 import com.andromeda.dreamshops.dto.ShopAccountDto;
 import com.andromeda.dreamshops.exceptions.ResourceNotFoundException;
 import com.andromeda.dreamshops.exceptions.ResourceProcessingException;
+import com.andromeda.dreamshops.mapper.ShopMapper;
 import com.andromeda.dreamshops.model.Shop;
 import com.andromeda.dreamshops.model.ShopAccount;
 import com.andromeda.dreamshops.repository.ShopAccountRepository;
@@ -10,7 +11,6 @@ import com.andromeda.dreamshops.request.UpdateShopAccountRequest;
 import com.andromeda.dreamshops.service.cloudprovider.ICloudProviderService;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -24,7 +24,7 @@ import java.util.Optional;
 public class ShopAccountService implements IShopAccountService{
     private final ShopAccountRepository shopAccountRepository;
     private final ICloudProviderService cloudProviderService;
-    private final ModelMapper modelMapper;
+    private final ShopMapper shopMapper;
 
     @Override
     @Transactional
@@ -151,14 +151,12 @@ public class ShopAccountService implements IShopAccountService{
 
     @Override
     public ShopAccountDto convertToDto(ShopAccount shopAccount) {
-        return modelMapper.map(shopAccount, ShopAccountDto.class);
+        return shopMapper.toDto(shopAccount);
     }
 
     @Override
     public List<ShopAccountDto> convertToDtoList(List<ShopAccount> shopAccounts) {
-        return shopAccounts.stream()
-                .map(this::convertToDto)
-                .toList();
+        return shopMapper.toAccountDtoList(shopAccounts);
     }
 
     @Override
@@ -1,10 +1,11 @@
 package com.andromeda.dreamshops.service.shop;
 
 import com.andromeda.dreamshops.dto.OrderDto;
-import com.andromeda.dreamshops.dto.ProductDto;
 import com.andromeda.dreamshops.dto.ShopDto;
 import com.andromeda.dreamshops.exceptions.AlreadyExistsException;
 import com.andromeda.dreamshops.exceptions.ResourceNotFoundException;
+import com.andromeda.dreamshops.mapper.ProductMapper;
+import com.andromeda.dreamshops.mapper.ShopMapper;
 import com.andromeda.dreamshops.model.*;
 import com.andromeda.dreamshops.repository.ProductRepository;
 import com.andromeda.dreamshops.repository.RoleRepository;
@@ -12,13 +13,14 @@ import com.andromeda.dreamshops.repository.ShopRepository;
 import com.andromeda.dreamshops.repository.UserRepository;
 import com.andromeda.dreamshops.request.AddShopRequest;
 import com.andromeda.dreamshops.request.UpdateShopRequest;
-import com.andromeda.dreamshops.service.cloudprovider.ICloudProviderService;
+import com.andromeda.dreamshops.security.user.ShopUserDetailsService;
+import com.andromeda.dreamshops.service.asset.AssetGarbageCollector;
 import com.andromeda.dreamshops.service.order.IOrderService;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -28,10 +30,12 @@ public class ShopService implements IShopService{
     private final ShopRepository shopRepository;
     private final IOrderService orderService;
     private final ProductRepository productRepository;
-    private final ModelMapper modelMapper;
+    private final ShopMapper shopMapper;
+    private final ProductMapper productMapper;
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
-    private final ICloudProviderService cloudProviderService;
+    private final AssetGarbageCollector assetGarbageCollector;
+    private final ShopUserDetailsService userDetailsService;
     private final IShopAccountService shopAccountService;
 
 
@@ -59,8 +63,12 @@ public class ShopService implements IShopService{
         Role role = roleRepository.findByName("ROLE_SHOP_OWNER")
                         .orElseThrow(() -> new ResourceNotFoundException("Role not found: ROLE_SHOP_OWNER"));
 
-        if(!user.getRoles().contains(role))
+        if(!user.getRoles().contains(role)) {
             user.getRoles().add(role);
+            // tokens issued before don't carry the new role
+            user.setAuthChangedAt(LocalDateTime.now());
+            userDetailsService.evictAfterCommit(user);
+        }
         //assign SHOP_OWNER role to the user only if the user doesn't have it already
 
         ShopAccount shopAccount = shopAccountService.createShopAccountForShop(newShop);
@@ -139,17 +147,21 @@ public class ShopService implements IShopService{
         if (shopOwner != null) {
             shopOwner.setShop(null);
             shopOwner.getRoles().removeIf(role::equals);
+            // tokens issued before still carry the removed role
+            shopOwner.setAuthChangedAt(LocalDateTime.now());
             userRepository.save(shopOwner);
+            userDetailsService.evictAfterCommit(shopOwner);
         }
         deleteShopImages(id);
         shopRepository.deleteById(id);
     }
 
+    // the folder is deleted from the storage in the background, once the transaction commits
     @Override
     @Transactional
     public void deleteShopImages(Long shopId) throws Exception {
       String shopFolder = String.format("dreamshops/shops/shop-%d/", shopId);
-      cloudProviderService.deleteFolder(shopFolder);
+      assetGarbageCollector.enqueueFolder(shopFolder);
     }
 
     @Override
@@ -184,12 +196,9 @@ public class ShopService implements IShopService{
 
     @Override
     public ShopDto convertToDto(Shop shop) {
-        ShopDto shopDto = modelMapper.map(shop, ShopDto.class);
+        ShopDto shopDto = shopMapper.toDto(shop);
         List<Product> products = productRepository.findByShopId(shop.getId());
-        List<ProductDto> productDtos = products.stream()
-                .map(product -> modelMapper.map(product, ProductDto.class))
-                .toList();
-        shopDto.setProducts(productDtos);
+        shopDto.setProducts(productMapper.toDtoList(products));
         //orders
         List<OrderDto> orderDtos = orderService.getOrdersByShopId(shop.getId());
         shopDto.setOrders(orderDtos);
@@ -6,6 +6,7 @@ import com.andromeda.dreamshops.enums.Theme;
 import com.andromeda.dreamshops.exceptions.AlreadyExistsException;
 import com.andromeda.dreamshops.exceptions.ResourceNotFoundException;
 import com.andromeda.dreamshops.exceptions.ResourceProcessingException;
+import com.andromeda.dreamshops.mapper.UserMapper;
 import com.andromeda.dreamshops.model.User;
 import com.andromeda.dreamshops.model.UserAccount;
 import com.andromeda.dreamshops.repository.UserAccountRepository;
@@ -13,7 +14,6 @@ import com.andromeda.dreamshops.request.UpdateUserAccountRequest;
 import com.andromeda.dreamshops.service.cloudprovider.ICloudProviderService;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -26,7 +26,7 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class UserAccountService implements IUserAccountService {
     private final UserAccountRepository userAccountRepository;
-    private final ModelMapper modelMapper;
+    private final UserMapper userMapper;
     private final ICloudProviderService cloudProviderService;
 
     @Override
@@ -129,7 +129,7 @@ public class UserAccountService implements IUserAccountService {
 
     @Override
     public UserAccountDto convertToDto(UserAccount userAccount) {
-        return modelMapper.map(userAccount, UserAccountDto.class);
+        return userMapper.toDto(userAccount);
     }
 
     @Override
@@ -3,6 +3,7 @@ package com.andromeda.dreamshops.service.user;
 import com.andromeda.dreamshops.dto.UserDto;
 import com.andromeda.dreamshops.exceptions.AlreadyExistsException;
 import com.andromeda.dreamshops.exceptions.ResourceNotFoundException;
+import com.andromeda.dreamshops.mapper.UserMapper;
 import com.andromeda.dreamshops.model.Role;
 import com.andromeda.dreamshops.model.User;
 import com.andromeda.dreamshops.model.UserAccount;
@@ -10,10 +11,10 @@ import com.andromeda.dreamshops.repository.RoleRepository;
 import com.andromeda.dreamshops.repository.UserRepository;
 import com.andromeda.dreamshops.request.CreateUserRequest;
 import com.andromeda.dreamshops.request.UpdateUserRequest;
+import com.andromeda.dreamshops.security.user.ShopUserDetailsService;
 import com.andromeda.dreamshops.service.auth.AuthVerificationService;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -28,10 +29,11 @@ public class UserService implements IUserService{
 
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
-    private final ModelMapper modelMapper;
+    private final UserMapper userMapper;
     private final PasswordEncoder passwordEncoder;
     private final IUserAccountService userAccountService;
     private final AuthVerificationService authVerificationService;
+    private final ShopUserDetailsService userDetailsService;
 
     @Override
     public User getUserById(Long userId) {
@@ -68,21 +70,27 @@ public class UserService implements IUserService{
                 .map(existingUser ->{
                     existingUser.setFirstName(request.getFirstName());
                     existingUser.setLastName(request.getLastName());
-                    return userRepository.save(existingUser);
+                    User saved = userRepository.save(existingUser);
+                    userDetailsService.evictAfterCommit(saved);
+                    return saved;
                 }).orElseThrow(()-> new ResourceNotFoundException("User not found with id: " + userId));
     }
 
     @Override
     public void deleteUser(Long userId) {
         userRepository.findById(userId)
-                .ifPresentOrElse(userRepository::delete, ()->{
+                .ifPresentOrElse(user -> {
+                    userRepository.delete(user);
+                    // the tokens of the user stop working right away on this node
+                    userDetailsService.evictAfterCommit(user);
+                }, ()->{
                     throw new ResourceNotFoundException("User not found with id: " + userId);
                 });
     }
 
     @Override
     public UserDto convertToDto(User user) {
-        return modelMapper.map(user, UserDto.class);
+        return userMapper.toDto(user);
     }
 
     @Override
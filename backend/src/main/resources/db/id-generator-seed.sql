@@ -0,0 +1,10 @@
+-- Starts the pooled id generators above the ids the tables already have (they used to be IDENTITY columns).
+-- Runs on every start. With ddl-auto=update Hibernate creates id_generator and inserts a starting row for every
+-- generator before this script runs, so the rows are inserted if missing and then raised to the ids in use;
+-- GREATEST never moves a generator back, so ids already handed out are not handed out again.
+-- The margin of 100 is twice the allocation size, so no pooled range can reach back into existing ids.
+insert ignore into id_generator (sequence_name, next_val) values ('orders', 1), ('order_item', 1), ('cart_item', 1), ('image', 1);
+update id_generator set next_val = greatest(next_val, (select coalesce(max(order_id), 0) + 100 from orders)) where sequence_name = 'orders';
+update id_generator set next_val = greatest(next_val, (select coalesce(max(id), 0) + 100 from order_item)) where sequence_name = 'order_item';
+update id_generator set next_val = greatest(next_val, (select coalesce(max(id), 0) + 100 from cart_item)) where sequence_name = 'cart_item';
+update id_generator set next_val = greatest(next_val, (select coalesce(max(id), 0) + 100 from image)) where sequence_name = 'image';
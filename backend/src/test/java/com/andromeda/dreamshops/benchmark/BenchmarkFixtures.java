@@ -0,0 +1,127 @@
+package com.andromeda.dreamshops.benchmark;
+
+import com.andromeda.dreamshops.enums.OrderStatus;
+import com.andromeda.dreamshops.model.*;
+import com.andromeda.dreamshops.repository.CategoryRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * In-memory entity graphs shared by the benchmarks, built without a database.
+ */
+final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    static Shop shop(long id) {
+        Shop shop = new Shop("Shop " + id);
+        shop.setId(id);
+        return shop;
+    }
+
+    static List<Product> products(int count, int imagesPerProduct) {
+        Shop shop = shop(1L);
+        Category electronics = new Category("Electronics");
+        electronics.setId(1L);
+        Category phones = new Category("Phones", electronics);
+        phones.setId(2L);
+
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            Product product = new Product("Product " + i, "Brand " + (i % 7),
+                    BigDecimal.valueOf(100 + i, 2), 50, "Description of product " + i, phones);
+            product.setId((long) i);
+            product.setShop(shop);
+            List<Image> images = new ArrayList<>(imagesPerProduct);
+            for (int j = 1; j <= imagesPerProduct; j++) {
+                Image image = new Image();
+                image.setId((long) i * 100 + j);
+                image.setFileName("product-" + i + "-" + j + ".jpg");
+                image.setFileType("image/jpeg");
+                image.setImageUrl("https://cdn.example.com/dreamshops/shops/shop-1/products/product-" + i + "-" + j + ".jpg");
+                image.setPublicId("dreamshops/shops/shop-1/products/product-" + i + "-" + j);
+                image.setProduct(product);
+                images.add(image);
+            }
+            product.setImages(images);
+            products.add(product);
+        }
+        return products;
+    }
+
+    static Order order(int lines) {
+        User user = new User();
+        user.setId(1L);
+        Order order = new Order();
+        order.setOrderId(1L);
+        order.setUser(user);
+        order.setShop(shop(1L));
+        order.setOrderDate(LocalDate.now());
+        order.setOrderStatus(OrderStatus.PENDING);
+        List<OrderItem> items = new ArrayList<>(lines);
+        for (Product product : products(lines, 0)) {
+            items.add(new OrderItem(order, product, 1 + (int) (product.getId() % 5), product.getPrice()));
+        }
+        order.setOrderItems(new HashSet<>(items));
+        order.setTotalAmount(BigDecimal.ZERO);
+        return order;
+    }
+
+    static Cart cart(int lines) {
+        Cart cart = new Cart();
+        cart.setId(1L);
+        for (Product product : products(lines, 0)) {
+            cart.addItem(cartItem(product, 1 + (int) (product.getId() % 5)));
+        }
+        return cart;
+    }
+
+    static CartItem cartItem(Product product, int quantity) {
+        CartItem item = new CartItem();
+        item.setProduct(product);
+        item.setQuantity(quantity);
+        item.setUnitPrice(product.getPrice());
+        item.setTotalPrice();
+        return item;
+    }
+
+    // a full category tree: `branching` roots, each node having `branching` children, `depth` levels deep
+    static List<Category> categoryTree(int depth, int branching) {
+        List<Category> categories = new ArrayList<>();
+        List<Category> level = new ArrayList<>();
+        level.add(null);
+        long nextId = 1;
+        for (int d = 0; d < depth; d++) {
+            List<Category> nextLevel = new ArrayList<>();
+            for (Category parent : level) {
+                for (int b = 0; b < branching; b++) {
+                    Category category = new Category("category-" + nextId, parent);
+                    category.setId(nextId++);
+                    categories.add(category);
+                    nextLevel.add(category);
+                }
+            }
+            level = nextLevel;
+        }
+        return categories;
+    }
+
+    // a mocked CategoryRepository answering the queries the category service uses from memory
+    static CategoryRepository categoryRepository(List<Category> categories) {
+        Map<Long, Category> byId = new HashMap<>();
+        for (Category category : categories) {
+            byId.put(category.getId(), category);
+        }
+        CategoryRepository categoryRepository = mock(CategoryRepository.class);
+        when(categoryRepository.findAll()).thenAnswer(invocation -> new ArrayList<>(categories));
+        when(categoryRepository.findById(any())).thenAnswer(invocation -> Optional.ofNullable(byId.get(invocation.<Long>getArgument(0))));
+        return categoryRepository;
+    }
+}
@@ -0,0 +1,40 @@
+package com.andromeda.dreamshops.benchmark;
+
+import com.andromeda.dreamshops.model.Cart;
+import com.andromeda.dreamshops.model.CartItem;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cart total maintenance: adding and removing one line on a cart that already holds {@code lines} lines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CartBenchmark {
+
+    @Param({"10", "100", "500"})
+    private int lines;
+
+    private Cart cart;
+    private CartItem item;
+
+    @Setup
+    public void setUp() {
+        cart = BenchmarkFixtures.cart(lines);
+        // a product that is not in the cart yet, otherwise addItem merges into its line and removeItem does nothing
+        item = BenchmarkFixtures.cartItem(BenchmarkFixtures.products(lines + 1, 0).getLast(), 3);
+    }
+
+    @Benchmark
+    public BigDecimal addAndRemoveItem() {
+        cart.addItem(item);
+        cart.removeItem(item);
+        return cart.getTotalAmount();
+    }
+}
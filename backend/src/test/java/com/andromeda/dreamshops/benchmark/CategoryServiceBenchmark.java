@@ -0,0 +1,52 @@
+package com.andromeda.dreamshops.benchmark;
+
+import com.andromeda.dreamshops.mapper.CategoryMapperImpl;
+import com.andromeda.dreamshops.model.Category;
+import com.andromeda.dreamshops.repository.CategoryRepository;
+import com.andromeda.dreamshops.service.category.CategoryService;
+import com.andromeda.dreamshops.service.category.CategoryTreeCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CategoryService.getAllSubCategoriesByParentId for a root of a full category tree,
+ * served by a mocked CategoryRepository answering from memory, so only the service side of the traversal is measured.
+ * {@code buildTreeSnapshot} is the cost paid once after every category write.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CategoryServiceBenchmark {
+
+    @Param({"3", "5"})
+    private int depth;
+
+    private CategoryTreeCache categoryTreeCache;
+    private CategoryService categoryService;
+    private Long rootId;
+
+    @Setup
+    public void setUp() {
+        List<Category> categories = BenchmarkFixtures.categoryTree(depth, 4);
+        CategoryRepository categoryRepository = BenchmarkFixtures.categoryRepository(categories);
+        categoryTreeCache = new CategoryTreeCache(categoryRepository);
+        categoryService = new CategoryService(categoryRepository, new CategoryMapperImpl(), categoryTreeCache);
+        rootId = categories.getFirst().getId();
+    }
+
+    @Benchmark
+    public List<Category> getAllSubCategoriesByParentId() {
+        return categoryService.getAllSubCategoriesByParentId(rootId);
+    }
+
+    @Benchmark
+    public int buildTreeSnapshot() {
+        categoryTreeCache.invalidate();
+        return categoryTreeCache.get().size();
+    }
+}
@@ -0,0 +1,73 @@
+package com.andromeda.dreamshops.benchmark;
+
+import com.andromeda.dreamshops.dto.OrderDto;
+import com.andromeda.dreamshops.dto.ProductDto;
+import com.andromeda.dreamshops.mapper.CategoryMapperImpl;
+import com.andromeda.dreamshops.mapper.OrderMapper;
+import com.andromeda.dreamshops.mapper.OrderMapperImpl;
+import com.andromeda.dreamshops.mapper.ProductMapper;
+import com.andromeda.dreamshops.mapper.ProductMapperImpl;
+import com.andromeda.dreamshops.model.Order;
+import com.andromeda.dreamshops.model.Product;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generated MapStruct mappers against the reflective ModelMapper they replaced,
+ * on a listing page of products and on an order with many lines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DtoMappingBenchmark {
+
+    @Param({"20", "100"})
+    private int pageSize;
+
+    private List<Product> products;
+    private Order order;
+
+    private ModelMapper modelMapper;
+    private ProductMapper productMapper;
+    private OrderMapper orderMapper;
+
+    @Setup
+    public void setUp() {
+        products = BenchmarkFixtures.products(pageSize, 3);
+        order = BenchmarkFixtures.order(pageSize);
+        modelMapper = new ModelMapper();
+        productMapper = new ProductMapperImpl(new CategoryMapperImpl());
+        orderMapper = new OrderMapperImpl();
+        // ModelMapper builds its type maps on first use, keep that out of the measurement
+        modelMapper.map(products.getFirst(), ProductDto.class);
+        modelMapper.map(order, OrderDto.class);
+    }
+
+    @Benchmark
+    public List<ProductDto> productPageModelMapper() {
+        return products.stream()
+                .map(product -> modelMapper.map(product, ProductDto.class))
+                .toList();
+    }
+
+    @Benchmark
+    public List<ProductDto> productPageMapStruct() {
+        return productMapper.toDtoList(products);
+    }
+
+    @Benchmark
+    public OrderDto orderModelMapper() {
+        return modelMapper.map(order, OrderDto.class);
+    }
+
+    @Benchmark
+    public OrderDto orderMapStruct() {
+        return orderMapper.toDto(order);
+    }
+}
@@ -0,0 +1,60 @@
+package com.andromeda.dreamshops.benchmark;
+
+import com.andromeda.dreamshops.repository.ImageRepository;
+import com.andromeda.dreamshops.service.asset.AssetGarbageCollector;
+import com.andromeda.dreamshops.service.cloudprovider.ICloudProviderService;
+import com.andromeda.dreamshops.service.image.ImageDerivativeService;
+import com.andromeda.dreamshops.service.image.ImageService;
+import com.andromeda.dreamshops.service.image.ImageUploadExecutor;
+import com.andromeda.dreamshops.service.product.IProductService;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Slug building of ImageService.buildProductImagePublicId for an upload file name.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageServiceBenchmark {
+
+    private static final MethodHandle BUILD_PRODUCT_IMAGE_PUBLIC_ID;
+
+    static {
+        try {
+            BUILD_PRODUCT_IMAGE_PUBLIC_ID = MethodHandles.privateLookupIn(ImageService.class, MethodHandles.lookup())
+                    .findVirtual(ImageService.class, "buildProductImagePublicId",
+                            MethodType.methodType(String.class, Long.class, String.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Param({"iphone-1.jpg", "Apple TV 4K (2nd Gen) -- Front View.JPEG"})
+    private String fileName;
+
+    private ImageService imageService;
+    private Long productId;
+
+    @Setup
+    public void setUp() {
+        imageService = new ImageService(mock(ImageRepository.class), mock(IProductService.class),
+                mock(ICloudProviderService.class), mock(ImageUploadExecutor.class),
+                mock(ImageDerivativeService.class), mock(AssetGarbageCollector.class));
+        productId = 42L;
+    }
+
+    @Benchmark
+    public String buildProductImagePublicId() throws Throwable {
+        return (String) BUILD_PRODUCT_IMAGE_PUBLIC_ID.invokeExact(imageService, productId, fileName);
+    }
+}
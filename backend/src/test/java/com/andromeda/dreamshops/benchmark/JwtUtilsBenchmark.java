@@ -0,0 +1,80 @@
+package com.andromeda.dreamshops.benchmark;
+
+import com.andromeda.dreamshops.security.jwt.JwtUtils;
+import com.andromeda.dreamshops.security.user.ShopUserDetails;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token checks done by AuthTokenFilter on every secured request.
+ * The {@code before*} benchmarks redo what JwtUtils did before the key and parser were built once:
+ * decode the secret and build a key and parser for every call, and parse the token twice per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtUtilsBenchmark {
+
+    private JwtUtils jwtUtils;
+    private String secret;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        byte[] secret = new byte[64];
+        for (int i = 0; i < secret.length; i++) {
+            secret[i] = (byte) (i * 31 + 7);
+        }
+        this.secret = Base64.getEncoder().encodeToString(secret);
+        jwtUtils = new JwtUtils(this.secret, 3_600_000);
+
+        List<GrantedAuthority> authorities = List.of(new SimpleGrantedAuthority("ROLE_USER"));
+        ShopUserDetails user = new ShopUserDetails(1L, "user1@email.com", "password", true, authorities);
+        token = jwtUtils.generateTokenForUser(new UsernamePasswordAuthenticationToken(user, null, authorities));
+    }
+
+    @Benchmark
+    public boolean validateToken() {
+        return jwtUtils.validateToken(token);
+    }
+
+    // what the filter did per request: validate, then parse again for the subject
+    @Benchmark
+    public String validateAndGetUserName() {
+        jwtUtils.validateToken(token);
+        return jwtUtils.getUserNameFromToken(token);
+    }
+
+    // what the filter does per request now
+    @Benchmark
+    public String parseAndValidate() {
+        return jwtUtils.parseAndValidate(token).getSubject();
+    }
+
+    @Benchmark
+    public String beforeValidateAndGetUserName() {
+        Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret)))
+                .build()
+                .parseClaimsJws(token);
+        Claims claims = Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret)))
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+        return claims.getSubject();
+    }
+}
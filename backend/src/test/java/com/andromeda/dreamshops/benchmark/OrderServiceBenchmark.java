@@ -0,0 +1,64 @@
+package com.andromeda.dreamshops.benchmark;
+
+import com.andromeda.dreamshops.mapper.OrderMapper;
+import com.andromeda.dreamshops.model.OrderItem;
+import com.andromeda.dreamshops.repository.OrderRepository;
+import com.andromeda.dreamshops.repository.ProductRepository;
+import com.andromeda.dreamshops.service.cart.CartService;
+import com.andromeda.dreamshops.service.inventory.InventoryLedger;
+import com.andromeda.dreamshops.service.order.OrderService;
+import com.andromeda.dreamshops.service.retry.OptimisticRetryExecutor;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * OrderService.calculateTotalAmount over the lines of one order.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderServiceBenchmark {
+
+    // the method is private, a constant method handle keeps the call as cheap as a direct one
+    private static final MethodHandle CALCULATE_TOTAL_AMOUNT;
+
+    static {
+        try {
+            CALCULATE_TOTAL_AMOUNT = MethodHandles.privateLookupIn(OrderService.class, MethodHandles.lookup())
+                    .findVirtual(OrderService.class, "calculateTotalAmount",
+                            MethodType.methodType(BigDecimal.class, List.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Param({"10", "100"})
+    private int lines;
+
+    private OrderService orderService;
+    private List<OrderItem> orderItems;
+
+    @Setup
+    public void setUp() {
+        orderService = new OrderService(mock(OrderRepository.class), mock(ProductRepository.class), mock(CartService.class),
+                mock(OrderMapper.class), mock(InventoryLedger.class), mock(OptimisticRetryExecutor.class));
+        orderItems = new ArrayList<>(BenchmarkFixtures.order(lines).getOrderItems());
+    }
+
+    @Benchmark
+    public BigDecimal calculateTotalAmount() throws Throwable {
+        return (BigDecimal) CALCULATE_TOTAL_AMOUNT.invokeExact(orderService, orderItems);
+    }
+}
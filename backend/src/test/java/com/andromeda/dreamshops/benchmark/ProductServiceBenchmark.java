@@ -0,0 +1,52 @@
+package com.andromeda.dreamshops.benchmark;
+
+import com.andromeda.dreamshops.dto.ProductDto;
+import com.andromeda.dreamshops.mapper.CategoryMapperImpl;
+import com.andromeda.dreamshops.mapper.ProductMapperImpl;
+import com.andromeda.dreamshops.model.Product;
+import com.andromeda.dreamshops.repository.CategoryRepository;
+import com.andromeda.dreamshops.repository.ImageRepository;
+import com.andromeda.dreamshops.repository.ProductRepository;
+import com.andromeda.dreamshops.repository.ShopRepository;
+import com.andromeda.dreamshops.service.asset.AssetGarbageCollector;
+import com.andromeda.dreamshops.service.category.ICategoryService;
+import com.andromeda.dreamshops.service.product.ProductService;
+import com.andromeda.dreamshops.service.retry.OptimisticRetryExecutor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * ProductService.getConvertedProducts on a listing page of products with images.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductServiceBenchmark {
+
+    @Param({"20", "100"})
+    private int pageSize;
+
+    private List<Product> products;
+    private ProductService productService;
+
+    @Setup
+    public void setUp() {
+        products = BenchmarkFixtures.products(pageSize, 3);
+        // only the mapper is used by the conversion, the mocks are not touched
+        productService = new ProductService(mock(ProductRepository.class), mock(CategoryRepository.class),
+                mock(ImageRepository.class), new ProductMapperImpl(new CategoryMapperImpl()), mock(ShopRepository.class),
+                mock(ICategoryService.class), mock(OptimisticRetryExecutor.class), mock(AssetGarbageCollector.class));
+    }
+
+    @Benchmark
+    public List<ProductDto> getConvertedProducts() {
+        return productService.getConvertedProducts(products);
+    }
+}
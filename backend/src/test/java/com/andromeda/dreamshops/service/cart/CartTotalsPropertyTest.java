@@ -0,0 +1,117 @@
+package com.andromeda.dreamshops.service.cart;
+
+import com.andromeda.dreamshops.dto.CartDto;
+import com.andromeda.dreamshops.dto.CartItemDto;
+import com.andromeda.dreamshops.dto.ProductDto;
+import com.andromeda.dreamshops.model.Cart;
+import com.andromeda.dreamshops.model.CartItem;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Random sequences of item changes: the incrementally kept cart totals must always equal
+ * the total recomputed from scratch with BigDecimal.
+ */
+class CartTotalsPropertyTest {
+    private static final int RUNS = 200;
+    private static final int STEPS = 300;
+
+    @Test
+    void cartTotalEqualsFullRecomputation() {
+        for (long seed = 0; seed < RUNS; seed++) {
+            Random random = new Random(seed);
+            Cart cart = new Cart();
+            List<CartItem> items = new ArrayList<>();
+            for (int step = 0; step < STEPS; step++) {
+                int op = random.nextInt(3);
+                if (op == 0 || items.isEmpty()) {
+                    CartItem item = new CartItem();
+                    item.setQuantity(quantity(random));
+                    item.setUnitPrice(price(random));
+                    item.setTotalPrice();
+                    cart.addItem(item);
+                    items.add(item);
+                } else if (op == 1) {
+                    CartItem item = items.get(random.nextInt(items.size()));
+                    cart.updateItem(item, quantity(random), price(random));
+                } else {
+                    cart.removeItem(items.remove(random.nextInt(items.size())));
+                }
+                assertEquals(0, recompute(cart).compareTo(cart.getTotalAmount()),
+                        "seed " + seed + ", step " + step);
+            }
+        }
+    }
+
+    @Test
+    void cachedCartTotalEqualsFullRecomputation() {
+        for (long seed = 0; seed < RUNS; seed++) {
+            Random random = new Random(seed);
+            CartDto empty = new CartDto();
+            empty.setCartId(1L);
+            empty.setCartItems(new LinkedHashSet<>());
+            CachedCart cart = CachedCart.of(empty, 1L);
+            List<Long> productIds = new ArrayList<>();
+            for (int step = 0; step < STEPS; step++) {
+                int op = random.nextInt(3);
+                if (op == 0 || productIds.isEmpty()) {
+                    long productId = random.nextInt(40);
+                    cart.addItem(product(productId, price(random)), quantity(random));
+                    if (!productIds.contains(productId)) {
+                        productIds.add(productId);
+                    }
+                } else if (op == 1) {
+                    long productId = productIds.get(random.nextInt(productIds.size()));
+                    cart.updateItem(product(productId, price(random)), quantity(random));
+                } else {
+                    cart.removeItem(productIds.remove(random.nextInt(productIds.size())));
+                }
+                CartDto dto = cart.toDto();
+                assertEquals(0, recompute(dto).compareTo(cart.getTotalAmount()), "seed " + seed + ", step " + step);
+                assertEquals(0, recompute(dto).compareTo(dto.getTotalAmount()), "seed " + seed + ", step " + step);
+            }
+        }
+    }
+
+    private static BigDecimal recompute(Cart cart) {
+        return cart.getItems().stream()
+                .filter(item -> item.getQuantity() > 0)
+                .map(item -> item.getUnitPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private static BigDecimal recompute(CartDto cart) {
+        return cart.getCartItems().stream()
+                .filter(item -> item.getQuantity() > 0)
+                .map(CartTotalsPropertyTest::lineTotal)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private static BigDecimal lineTotal(CartItemDto item) {
+        return item.getUnitPrice().multiply(BigDecimal.valueOf(item.getQuantity()));
+    }
+
+    private static ProductDto product(long id, BigDecimal price) {
+        ProductDto product = new ProductDto();
+        product.setId(id);
+        product.setPrice(price);
+        product.setShopId(1L);
+        return product;
+    }
+
+    // mostly positive, sometimes zero, like a quantity update to 0
+    private static int quantity(Random random) {
+        return random.nextInt(10) == 0 ? 0 : 1 + random.nextInt(50);
+    }
+
+    private static BigDecimal price(Random random) {
+        return BigDecimal.valueOf(random.nextInt(10_000_000), 2);
+    }
+}
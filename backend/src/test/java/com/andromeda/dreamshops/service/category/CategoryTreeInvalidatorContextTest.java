@@ -0,0 +1,58 @@
+package com.andromeda.dreamshops.service.category;
+
+import com.andromeda.dreamshops.model.Category;
+import com.andromeda.dreamshops.repository.CategoryRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Wires {@link CategoryTreeInvalidator} the way Hibernate does, while the entityManagerFactory that
+ * CategoryRepository and so CategoryTreeCache depend on is still being created, without a database.
+ */
+class CategoryTreeInvalidatorContextTest {
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withUserConfiguration(EntityManagerFactoryWiring.class)
+            .withBean(CategoryTreeCache.class);
+
+    @Test
+    void listenerIsCreatedWhileTheEntityManagerFactoryIsBuilt() {
+        contextRunner.run(context -> assertThat(context).hasNotFailed());
+    }
+
+    @Test
+    void categoryChangeInvalidatesTheCachedTree() {
+        contextRunner.run(context -> {
+            CategoryTreeCache cache = context.getBean(CategoryTreeCache.class);
+            long version = cache.getVersion();
+
+            context.getBean(EntityListeners.class).invalidator().categoryChanged(new Category());
+
+            assertThat(cache.getVersion()).isGreaterThan(version);
+        });
+    }
+
+    record EntityListeners(CategoryTreeInvalidator invalidator) {
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    static class EntityManagerFactoryWiring {
+        // stands in for entityManagerFactory: Hibernate's SpringBeanContainer creates the entity listeners
+        // with constructor autowiring while the factory is built
+        @Bean
+        EntityListeners entityManagerFactory(AutowireCapableBeanFactory beanFactory) {
+            return new EntityListeners((CategoryTreeInvalidator) beanFactory.createBean(
+                    CategoryTreeInvalidator.class, AutowireCapableBeanFactory.AUTOWIRE_CONSTRUCTOR, false));
+        }
+
+        @Bean
+        CategoryRepository categoryRepository(EntityListeners entityManagerFactory) {
+            return mock(CategoryRepository.class);
+        }
+    }
+}
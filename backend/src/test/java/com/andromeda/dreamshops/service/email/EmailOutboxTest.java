@@ -0,0 +1,122 @@
+package com.andromeda.dreamshops.service.email;
+
+import com.andromeda.dreamshops.model.OutboxEmail;
+import com.andromeda.dreamshops.repository.OutboxEmailRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.notNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Dispatches outbox emails to {@link InProcessSmtpServer}, with the outbox table mocked.
+ */
+class EmailOutboxTest {
+    private static final int MAX_ATTEMPTS = 3;
+
+    private InProcessSmtpServer smtpServer;
+    private OutboxEmailRepository outboxRepository;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        smtpServer = new InProcessSmtpServer();
+        outboxRepository = mock(OutboxEmailRepository.class);
+        when(outboxRepository.claim(anyLong(), any(), any())).thenReturn(1);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        smtpServer.close();
+    }
+
+    @Test
+    void sendsDueEmailsOverOneConnectionAndRemovesThem() {
+        due(email(1L, "first@example.com", 0), email(2L, "second@example.com", 0), email(3L, "third@example.com", 0));
+
+        outbox(smtpServer.port()).dispatch();
+
+        assertEquals(1, smtpServer.connections());
+        assertEquals(List.of("first@example.com", "second@example.com", "third@example.com"),
+                smtpServer.received().stream().map(InProcessSmtpServer.Received::recipient).toList());
+        assertTrue(smtpServer.received().get(0).data().contains("Subject: Account Verification"));
+        verify(outboxRepository).deleteAllByIdInBatch(List.of(1L, 2L, 3L));
+        verify(outboxRepository, never()).recordFailure(anyLong(), anyInt(), any(), any());
+        assertEquals(3, meterRegistry.counter("mail.outbox.sent").count());
+    }
+
+    @Test
+    void retriesRejectedEmailLaterAndSendsTheRest() {
+        due(email(1L, "first@example.com", 0), email(2L, "rejected@example.com", 0), email(3L, "third@example.com", 0));
+
+        outbox(smtpServer.port()).dispatch();
+
+        assertEquals(2, smtpServer.received().size());
+        verify(outboxRepository).deleteAllByIdInBatch(List.of(1L, 3L));
+        verify(outboxRepository).recordFailure(eq(2L), eq(1), notNull(), anyString());
+        assertEquals(1, meterRegistry.counter("mail.outbox.failures").count());
+    }
+
+    @Test
+    void keepsEmailsWhenTheServerIsDownAndGivesUpAfterMaxAttempts() throws IOException {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            closedPort = socket.getLocalPort();
+        }
+        due(email(1L, "first@example.com", 0), email(2L, "second@example.com", MAX_ATTEMPTS - 1));
+
+        outbox(closedPort).dispatch();
+
+        verify(outboxRepository, never()).deleteAllByIdInBatch(any());
+        verify(outboxRepository).recordFailure(eq(1L), eq(1), notNull(), anyString());
+        verify(outboxRepository).recordFailure(eq(2L), eq(MAX_ATTEMPTS), isNull(), anyString());
+        assertEquals(1, meterRegistry.counter("mail.outbox.abandoned").count());
+    }
+
+    private EmailOutbox outbox(int port) {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("127.0.0.1");
+        mailSender.setPort(port);
+        Properties properties = new Properties();
+        properties.put("mail.smtp.connectiontimeout", "2000");
+        properties.put("mail.smtp.timeout", "2000");
+        mailSender.setJavaMailProperties(properties);
+        return new EmailOutbox(outboxRepository, new EmailService(mailSender), meterRegistry,
+                mock(PlatformTransactionManager.class), 1, 20, MAX_ATTEMPTS,
+                Duration.ofSeconds(30), Duration.ofMinutes(30), Duration.ofMinutes(5));
+    }
+
+    private void due(OutboxEmail... emails) {
+        when(outboxRepository.findByNextAttemptAtLessThanEqualOrderByIdAsc(any(), any())).thenReturn(List.of(emails));
+    }
+
+    private OutboxEmail email(Long id, String recipient, int attempts) {
+        OutboxEmail email = new OutboxEmail(recipient, "Account Verification", "<p>123456</p>");
+        email.setId(id);
+        email.setAttempts(attempts);
+        return email;
+    }
+}
@@ -0,0 +1,64 @@
+package com.andromeda.dreamshops.service.image;
+
+import com.andromeda.dreamshops.enums.ImageVariant;
+import com.andromeda.dreamshops.exceptions.ResourceProcessingException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Images above {@code image.derivatives.max-pixels} must be rejected from their header, without being decoded.
+ */
+class ImageDerivativeServiceTest {
+    private static final long MAX_PIXELS = 100 * 100;
+
+    private final ImageDerivativeService derivativeService = new ImageDerivativeService(1, 4, MAX_PIXELS);
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void tearDown() {
+        derivativeService.shutdown();
+    }
+
+    @Test
+    void rendersVariantsOfImagesWithinTheLimit() throws IOException {
+        Map<ImageVariant, Path> variants = derivativeService.renderVariants(png(100, 100)).join();
+        try {
+            assertEquals(ImageVariant.values().length, variants.size());
+        } finally {
+            ImageDerivativeService.deleteAll(variants);
+        }
+    }
+
+    @Test
+    void rejectsImagesAboveTheLimit() throws IOException {
+        Path original = png(101, 100);
+
+        CompletionException variants = assertThrows(CompletionException.class,
+                () -> derivativeService.renderVariants(original).join());
+        CompletionException fill = assertThrows(CompletionException.class,
+                () -> derivativeService.renderFill(original, 10, 10).join());
+
+        assertInstanceOf(ResourceProcessingException.class, variants.getCause());
+        assertInstanceOf(ResourceProcessingException.class, fill.getCause());
+    }
+
+    private Path png(int width, int height) throws IOException {
+        Path file = tempDir.resolve(width + "x" + height + ".png");
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", file.toFile());
+        return file;
+    }
+}